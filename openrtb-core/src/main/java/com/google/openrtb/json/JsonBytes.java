@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import com.fasterxml.jackson.core.util.BufferRecyclers;
+
+/**
+ * Helpers for splicing values into pre-serialized JSON, shared by the template-based writers.
+ */
+final class JsonBytes {
+
+  /**
+   * Copies a string into {@code dest} at {@code pos}, if it's plain ASCII that needs no JSON
+   * escaping. The destination must have room for {@code s.length()} bytes.
+   *
+   * @return {@code false} if the string needs escaping or UTF-8 encoding, in which case
+   *     {@code dest} may have been partially overwritten
+   */
+  static boolean copyPlainAscii(String s, byte[] dest, int pos) {
+    int len = s.length();
+    for (int i = 0; i < len; ++i) {
+      char c = s.charAt(i);
+      if (c < 0x20 || c >= 0x80 || c == '"' || c == '\\') {
+        return false;
+      }
+      dest[pos + i] = (byte) c;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the contents of a JSON string value (without the quotes), encoded as UTF-8.
+   */
+  static byte[] escape(String s) {
+    byte[] bytes = new byte[s.length()];
+    return copyPlainAscii(s, bytes, 0)
+        ? bytes
+        // Slow path for anything that needs escaping or UTF-8 encoding.
+        : BufferRecyclers.getJsonStringEncoder().quoteAsUTF8(s);
+  }
+
+  /**
+   * Returns the position of the first occurrence of {@code pattern} in {@code data},
+   * between {@code from} (inclusive) and {@code to} (exclusive), or -1 if not found.
+   */
+  static int indexOf(byte[] data, byte[] pattern, int from, int to) {
+    outer:
+    for (int i = from; i <= to - pattern.length; ++i) {
+      for (int j = 0; j < pattern.length; ++j) {
+        if (data[i + j] != pattern[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+
+  private JsonBytes() {
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.util.OpenRtbValidator;
+import com.google.openrtb.util.PreparedRequest;
+
+/**
+ * Filters bids while a {@link com.google.openrtb.OpenRtb.BidResponse} is read, see
+ * {@link OpenRtbJsonReader#withBidFilter(OpenRtbJsonBidFilter)}. The bids of a seat are checked
+ * when the seat is completely read, and rejected bids are never in the seat that the reader
+ * returns.
+ *
+ * <p>Implementations of this interface have to be threadsafe.
+ */
+@FunctionalInterface
+public interface OpenRtbJsonBidFilter {
+
+  /**
+   * Checks a bid that was completely read.
+   *
+   * @param seatbid The bid's seat, completely read; fields that come after the {@code bid}
+   *     array in the JSON, like {@code seat} in some responses, are already set
+   * @return {@code true} to add the bid to the seat, {@code false} to drop it
+   */
+  boolean accept(SeatBid.Builder seatbid, Bid.Builder bid);
+
+  /**
+   * Checks a bid that is partially read, before its markup ({@code adm}) is read.
+   * Returning {@code false} skips the markup, and drops the bid without calling
+   * {@link #accept(SeatBid.Builder, Bid.Builder)}, but
+   * {@link #rejectedEarly(SeatBid.Builder, Bid.Builder)} instead; so this should only happen
+   * for bids that would be rejected whatever their remaining fields.
+   * The default implementation always reads the markup.
+   *
+   * @param bid The fields of the bid that come before {@code adm} in the JSON
+   */
+  default boolean readMarkup(Bid.Builder bid) {
+    return true;
+  }
+
+  /**
+   * Called for a bid whose markup was skipped, after its other fields were read.
+   * The bid is dropped anyway; this is only useful for metrics or logging.
+   * The default implementation does nothing.
+   *
+   * @param seatbid The bid's seat. Fields that come after the {@code bid} array in the JSON
+   *     (like {@code seat} in some responses) are not read yet
+   * @param bid The bid, without its markup
+   */
+  default void rejectedEarly(SeatBid.Builder seatbid, Bid.Builder bid) {
+  }
+
+  /**
+   * Returns a filter that validates bids against a prepared request, with the same rules and
+   * metrics as {@link OpenRtbValidator#validate(PreparedRequest, com.google.openrtb.OpenRtb
+   * .BidResponse.Builder)}.
+   *
+   * @param skipMarkup If {@code true}, the markup is skipped for bids that the standard rules
+   *     already reject, see {@link OpenRtbValidator#rejectsEarly(PreparedRequest, Bid.Builder)}.
+   *     These bids are still validated without their markup, for the metrics; but if their
+   *     {@code seat} comes after the {@code bid} array, they're counted without a seat
+   */
+  static OpenRtbJsonBidFilter validating(
+      OpenRtbValidator validator, PreparedRequest request, boolean skipMarkup) {
+    checkNotNull(validator);
+    checkNotNull(request);
+    return new OpenRtbJsonBidFilter() {
+      @Override public boolean accept(SeatBid.Builder seatbid, Bid.Builder bid) {
+        return validator.validate(request, seatbid, bid);
+      }
+
+      @Override public boolean readMarkup(Bid.Builder bid) {
+        return !skipMarkup || !validator.rejectsEarly(request, bid);
+      }
+
+      @Override public void rejectedEarly(SeatBid.Builder seatbid, Bid.Builder bid) {
+        validator.validate(request, seatbid, bid);
+      }
+    };
+  }
+}
@@ -38,11 +38,16 @@ import javax.annotation.Nullable;
  *   <li>Native model: {@link OpenRtbNativeJsonWriter} and {@link OpenRtbNativeJsonReader}</li>
  * </ul>
  *
+ * <p>The {@link JsonFactory} can also be a binary format with the JSON data model, like
+ * Smile or CBOR. Binary formats should be used with byte-based streams, and they will always
+ * keep native documents as nested objects instead of strings with embedded JSON.
+ *
  * <p>This class is NOT threadsafe. You should use only to configure and create the
  * reader/writer objects, which will be threadsafe.
  */
 public class OpenRtbJsonFactory {
   private static final String FIELDNAME_ALL = "*";
+  private static final JsonFactory TEXT_JSON_FACTORY = new JsonFactory();
 
   private JsonFactory jsonFactory;
   private boolean strict;
@@ -137,9 +142,18 @@ public class OpenRtbJsonFactory {
 
   /**
    * Returns {@code true} for object native field mode, {@code false} if not.
+   * This is always {@code true} for binary formats.
    */
   public boolean isForceNativeAsObject() {
-    return forceNativeAsObject;
+    return forceNativeAsObject || !isTextual();
+  }
+
+  /**
+   * Returns {@code true} if the {@link JsonFactory} produces textual JSON, {@code false}
+   * for binary formats like Smile or CBOR.
+   */
+  public final boolean isTextual() {
+    return !getJsonFactory().canHandleBinaryNatively();
   }
 
   /**
@@ -259,4 +273,12 @@ public class OpenRtbJsonFactory {
     }
     return jsonFactory;
   }
+
+  /**
+   * Returns a {@link JsonFactory} for textual JSON, used for documents embedded as strings.
+   * This is the configured factory, unless that uses a binary format.
+   */
+  public final JsonFactory getTextJsonFactory() {
+    return isTextual() ? getJsonFactory() : TEXT_JSON_FACTORY;
+  }
 }
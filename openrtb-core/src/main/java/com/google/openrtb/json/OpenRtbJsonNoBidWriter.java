@@ -0,0 +1,186 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.openrtb.json.JsonBytes.escape;
+import static com.google.openrtb.json.JsonBytes.indexOf;
+
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.NoBidReason;
+import com.google.protobuf.CodedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * Fast path for no-bid responses: a {@link BidResponse} that only has an {@code id}, and
+ * optionally a {@code nbr}. The JSON for each {@link NoBidReason} is serialized once by the
+ * {@link OpenRtbJsonWriter}, so writing a no-bid only needs to splice the escaped request id
+ * between two constant byte arrays. No-bids without a reason can also be signaled with an
+ * empty body (HTTP 204 No Content), see {@link #isNoContent(BidResponse)}.
+ *
+ * <p>Splicing requires a textual JSON factory; for other factories this will just delegate
+ * all work to the writer.
+ *
+ * <p>This class is threadsafe.
+ */
+public class OpenRtbJsonNoBidWriter {
+  /**
+   * HTTP status for a response without body, which OpenRTB accepts as a no-bid.
+   */
+  public static final int HTTP_NO_CONTENT = 204;
+
+  private static final String SENTINEL = "__OPENRTB_NOBID__";
+
+  private final OpenRtbJsonWriter writer;
+  // Prefix and suffix of the template for each NoBidReason, by number; the last
+  // position is used for no-bids without reason. Null for non-textual factories.
+  @Nullable private final byte[][] prefixes;
+  @Nullable private final byte[][] suffixes;
+
+  protected OpenRtbJsonNoBidWriter(OpenRtbJsonWriter writer) throws IOException {
+    this.writer = writer;
+
+    if (writer.factory().isTextual()) {
+      int maxNumber = 0;
+      for (NoBidReason nbr : NoBidReason.values()) {
+        maxNumber = Math.max(maxNumber, nbr.getNumber());
+      }
+      this.prefixes = new byte[maxNumber + 2][];
+      this.suffixes = new byte[maxNumber + 2][];
+      buildTemplate(null, maxNumber + 1);
+      for (NoBidReason nbr : NoBidReason.values()) {
+        buildTemplate(nbr, nbr.getNumber());
+      }
+    } else {
+      this.prefixes = null;
+      this.suffixes = null;
+    }
+  }
+
+  public final OpenRtbJsonWriter writer() {
+    return writer;
+  }
+
+  /**
+   * Returns {@code true} if the response is a no-bid: it has no seats, and no other property
+   * except the {@code id} and {@code nbr}.
+   */
+  public boolean isNoBid(BidResponse resp) {
+    if (resp.getSeatbidCount() != 0 || resp.hasBidid() || resp.hasCur()
+        || resp.hasCustomdata()) {
+      return false;
+    }
+    // Protobuf has no cheap extension count, but any extension would add to the
+    // serialized size (which is memoized) beyond the size of the id and nbr.
+    int size = CodedOutputStream.computeStringSize(BidResponse.ID_FIELD_NUMBER, resp.getId());
+    if (resp.hasNbr()) {
+      size += CodedOutputStream.computeEnumSize(
+          BidResponse.NBR_FIELD_NUMBER, resp.getNbr().getNumber());
+    }
+    return resp.getSerializedSize() == size;
+  }
+
+  /**
+   * Returns {@code true} if the response is a no-bid without any reason, so it can be sent as
+   * an empty HTTP response with status {@link #HTTP_NO_CONTENT} instead of any JSON content.
+   */
+  public boolean isNoContent(BidResponse resp) {
+    return !resp.hasNbr() && isNoBid(resp);
+  }
+
+  /**
+   * Serializes a {@link BidResponse} to JSON, streamed into an {@link OutputStream}.
+   * No-bids are spliced from their pre-serialized template; any other response is
+   * serialized by the writer.
+   */
+  public void writeBidResponse(BidResponse resp, OutputStream os) throws IOException {
+    if (prefixes != null && isNoBid(resp)) {
+      writeNoBid(resp.getId(), resp.hasNbr() ? resp.getNbr() : null, os);
+    } else {
+      writer.writeBidResponse(resp, os);
+    }
+  }
+
+  /**
+   * Serializes a no-bid response to JSON, streamed into an {@link OutputStream}.
+   *
+   * @param id Request id
+   * @param nbr Reason for not bidding, or {@code null} for none
+   */
+  public void writeNoBid(String id, @Nullable NoBidReason nbr, OutputStream os)
+      throws IOException {
+    if (prefixes == null) {
+      writer.writeBidResponse(newNoBid(id, nbr), os);
+      return;
+    }
+    int index = templateIndex(nbr);
+    os.write(prefixes[index]);
+    os.write(escape(id));
+    os.write(suffixes[index]);
+    os.flush();
+  }
+
+  /**
+   * Serializes a no-bid response to JSON, returned as a byte array.
+   *
+   * @param id Request id
+   * @param nbr Reason for not bidding, or {@code null} for none
+   */
+  public byte[] writeNoBid(String id, @Nullable NoBidReason nbr) throws IOException {
+    if (prefixes == null) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      writer.writeBidResponse(newNoBid(id, nbr), os);
+      return os.toByteArray();
+    }
+    int index = templateIndex(nbr);
+    byte[] prefix = prefixes[index];
+    byte[] escapedId = escape(id);
+    byte[] suffix = suffixes[index];
+    byte[] json = Arrays.copyOf(prefix, prefix.length + escapedId.length + suffix.length);
+    System.arraycopy(escapedId, 0, json, prefix.length, escapedId.length);
+    System.arraycopy(suffix, 0, json, prefix.length + escapedId.length, suffix.length);
+    return json;
+  }
+
+  private int templateIndex(@Nullable NoBidReason nbr) {
+    return nbr == null ? prefixes.length - 1 : nbr.getNumber();
+  }
+
+  private void buildTemplate(@Nullable NoBidReason nbr, int index) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    writer.writeBidResponse(newNoBid(SENTINEL, nbr), os);
+    byte[] json = os.toByteArray();
+    byte[] sentinel = SENTINEL.getBytes(StandardCharsets.US_ASCII);
+    int pos = indexOf(json, sentinel, 0, json.length);
+    checkState(pos != -1, "Request id not found in no-bid template");
+    prefixes[index] = Arrays.copyOf(json, pos);
+    suffixes[index] = Arrays.copyOfRange(json, pos + sentinel.length, json.length);
+  }
+
+  private static BidResponse newNoBid(String id, @Nullable NoBidReason nbr) {
+    BidResponse.Builder resp = BidResponse.newBuilder().setId(id);
+    if (nbr != null) {
+      resp.setNbr(nbr);
+    }
+    return resp.build();
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Serializes large OpenRTB outputs in parallel, using a {@link ForkJoinPool}. Each segment
+ * of the output is serialized into a separate buffer by the {@link OpenRtbJsonWriter}, then
+ * all segments are written in order with a single scatter/gather write. Segments are either
+ * the {@link SeatBid}s of a large {@link BidResponse}, or whole records of a batch that is
+ * written in the NDJSON format (one JSON document per line).
+ *
+ * <p>The output is identical to the sequential {@link OpenRtbJsonWriter}'s, which requires
+ * a textual JSON factory. A large response's own fields are written by the writer's
+ * {@code writeBidResponseTailFields()}, so writer subclasses should customize that method
+ * (or the seat/bid methods) rather than {@code writeBidResponseFields()}.
+ *
+ * <p>This class is threadsafe.
+ */
+public class OpenRtbJsonParallelWriter {
+  private static final int BATCH_SIZE = 1024;
+  private static final byte[] NEWLINE = { '\n' };
+  private static final RawJsonString EMPTY = new RawJsonString(new byte[0]);
+
+  private final OpenRtbJsonWriter writer;
+  private final ForkJoinPool pool;
+
+  protected OpenRtbJsonParallelWriter(OpenRtbJsonWriter writer, ForkJoinPool pool) {
+    checkArgument(writer.factory().isTextual(),
+        "Parallel writing needs a textual JSON factory: %s",
+        writer.factory().getJsonFactory().getFormatName());
+    this.writer = writer;
+    this.pool = checkNotNull(pool);
+  }
+
+  public final OpenRtbJsonWriter writer() {
+    return writer;
+  }
+
+  public final ForkJoinPool pool() {
+    return pool;
+  }
+
+  /**
+   * Serializes a {@link BidResponse} to JSON, with its seats serialized in parallel.
+   *
+   * @return Number of bytes written
+   */
+  public long writeBidResponse(BidResponse resp, GatheringByteChannel channel)
+      throws IOException {
+    int seatCount = resp.getSeatbidCount();
+    byte[][] seats = new byte[seatCount][];
+    invoke(new SegmentTask<>(resp.getSeatbidList(), seats, 0, seatCount, writer::writeSeatBid));
+
+    // The frame is everything except the seats, with a split point after each
+    // seat separator; the seats will be spliced between these parts of the frame.
+    ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    int[] splits = new int[seatCount];
+    try (JsonGenerator gen = writer.factory().getJsonFactory().createGenerator(frame)) {
+      gen.writeStartObject();
+      gen.writeStringField("id", resp.getId());
+      if (seatCount != 0) {
+        gen.writeArrayFieldStart("seatbid");
+        for (int i = 0; i < seatCount; ++i) {
+          gen.writeRawValue(EMPTY);
+          gen.flush();
+          splits[i] = frame.size();
+        }
+        gen.writeEndArray();
+      }
+      writer.writeBidResponseTailFields(resp, gen);
+      writer.writeExtensions(resp, gen);
+      gen.writeEndObject();
+    }
+
+    byte[] frameBytes = frame.toByteArray();
+    ByteBuffer[] buffers = new ByteBuffer[seatCount * 2 + 1];
+    int frameStart = 0;
+    for (int i = 0; i < seatCount; ++i) {
+      buffers[i * 2] = ByteBuffer.wrap(frameBytes, frameStart, splits[i] - frameStart);
+      buffers[i * 2 + 1] = ByteBuffer.wrap(seats[i]);
+      frameStart = splits[i];
+    }
+    buffers[seatCount * 2] =
+        ByteBuffer.wrap(frameBytes, frameStart, frameBytes.length - frameStart);
+    return writeFully(buffers, channel);
+  }
+
+  /**
+   * Serializes a batch of {@link BidRequest}s to NDJSON, with records serialized in parallel.
+   *
+   * @return Number of bytes written
+   */
+  public long writeBidRequests(List<BidRequest> reqs, GatheringByteChannel channel)
+      throws IOException {
+    return writeRecords(reqs, channel, writer::writeBidRequest);
+  }
+
+  /**
+   * Serializes a batch of {@link BidResponse}s to NDJSON, with records serialized in parallel.
+   *
+   * @return Number of bytes written
+   */
+  public long writeBidResponses(List<BidResponse> resps, GatheringByteChannel channel)
+      throws IOException {
+    return writeRecords(resps, channel, writer::writeBidResponse);
+  }
+
+  private <T> long writeRecords(List<T> records, GatheringByteChannel channel,
+      SegmentWriter<T> segWriter) throws IOException {
+    long written = 0;
+
+    // Large batches are processed in slices, so only a bounded number of records
+    // is kept in memory as serialized segments.
+    for (int start = 0; start < records.size(); start += BATCH_SIZE) {
+      int end = Math.min(records.size(), start + BATCH_SIZE);
+      byte[][] segs = new byte[end - start][];
+      invoke(new SegmentTask<>(records.subList(start, end), segs, 0, segs.length, segWriter));
+
+      ByteBuffer[] buffers = new ByteBuffer[segs.length * 2];
+      for (int i = 0; i < segs.length; ++i) {
+        buffers[i * 2] = ByteBuffer.wrap(segs[i]);
+        buffers[i * 2 + 1] = ByteBuffer.wrap(NEWLINE);
+      }
+      written += writeFully(buffers, channel);
+    }
+
+    return written;
+  }
+
+  private static long writeFully(ByteBuffer[] buffers, GatheringByteChannel channel)
+      throws IOException {
+    long written = 0;
+    int first = 0;
+    while (first < buffers.length) {
+      written += channel.write(buffers, first, buffers.length - first);
+      while (first < buffers.length && !buffers[first].hasRemaining()) {
+        ++first;
+      }
+    }
+    return written;
+  }
+
+  private void invoke(SegmentTask<?> task) throws IOException {
+    try {
+      pool.invoke(task);
+    } catch (UncheckedIOException e) {
+      Throwable cause = e;
+      while (cause instanceof UncheckedIOException) {
+        cause = cause.getCause();
+      }
+      throw (IOException) cause;
+    }
+  }
+
+  @FunctionalInterface
+  private interface SegmentWriter<T> {
+    void write(T msg, JsonGenerator gen) throws IOException;
+  }
+
+  private final class SegmentTask<T> extends RecursiveAction {
+    private final List<T> msgs;
+    private final byte[][] segs;
+    private final int from;
+    private final int to;
+    private final SegmentWriter<T> segWriter;
+
+    SegmentTask(List<T> msgs, byte[][] segs, int from, int to, SegmentWriter<T> segWriter) {
+      this.msgs = msgs;
+      this.segs = segs;
+      this.from = from;
+      this.to = to;
+      this.segWriter = segWriter;
+    }
+
+    @Override protected void compute() {
+      if (to - from > 1) {
+        int mid = (from + to) >>> 1;
+        invokeAll(
+            new SegmentTask<>(msgs, segs, from, mid, segWriter),
+            new SegmentTask<>(msgs, segs, mid, to, segWriter));
+      } else if (to > from) {
+        try {
+          ByteArrayOutputStream os = new ByteArrayOutputStream();
+          try (JsonGenerator gen = writer.factory().getJsonFactory().createGenerator(os)) {
+            segWriter.write(msgs.get(from), gen);
+          }
+          segs[from] = os.toByteArray();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+}
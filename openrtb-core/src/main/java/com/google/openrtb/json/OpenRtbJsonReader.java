@@ -81,20 +81,49 @@ import com.google.openrtb.OpenRtb.VideoPlacementType;
 import com.google.openrtb.OpenRtb.VolumeNormalizationMode;
 import com.google.openrtb.util.ProtoUtils;
 import com.google.protobuf.ByteString;
-import java.io.CharArrayReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Desserializes OpenRTB {@link BidRequest}/{@link BidResponse} messages from JSON.
  *
+ * <p>A reader can have a {@link OpenRtbJsonBidFilter}, to validate each bid of a response
+ * while it's read; see {@link #withBidFilter(OpenRtbJsonBidFilter)}.
+ *
  * <p>This class is threadsafe.
  */
 public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
+  @Nullable private final OpenRtbJsonBidFilter bidFilter;
 
   protected OpenRtbJsonReader(OpenRtbJsonFactory factory) {
+    this(factory, null);
+  }
+
+  /**
+   * Subclasses should have a protected constructor that super-calls this, and override
+   * {@link #withBidFilter(OpenRtbJsonBidFilter)} to use that constructor.
+   */
+  protected OpenRtbJsonReader(OpenRtbJsonFactory factory,
+      @Nullable OpenRtbJsonBidFilter bidFilter) {
     super(factory);
+    this.bidFilter = bidFilter;
+  }
+
+  /**
+   * Returns a copy of this reader that filters the bids of responses, as they're read.
+   * Bids rejected by the filter are not added to their seat, and their markup may not
+   * even be parsed. The copy shares this reader's configuration, so it's cheap to create
+   * one for each response, with a filter for the corresponding request.
+   */
+  public OpenRtbJsonReader withBidFilter(@Nullable OpenRtbJsonBidFilter bidFilter) {
+    return new OpenRtbJsonReader(factory(), bidFilter);
+  }
+
+  @Nullable public final OpenRtbJsonBidFilter getBidFilter() {
+    return bidFilter;
   }
 
   /**
@@ -404,8 +433,10 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
     switch (fieldName) {
       case "request":
         if (par.getCurrentToken() == JsonToken.VALUE_STRING) {
-          nativ.setRequestNative(factory().newNativeReader().readNativeRequest(new CharArrayReader(
-              par.getTextCharacters(), par.getTextOffset(), par.getTextLength())));
+          try (JsonParser nativePar = factory().getTextJsonFactory().createParser(
+              par.getTextCharacters(), par.getTextOffset(), par.getTextLength())) {
+            nativ.setRequestNative(factory().newNativeReader().readNativeRequest(nativePar));
+          }
         } else { // Object
           nativ.setRequestNative(factory().newNativeReader().readNativeRequest(par));
         }
@@ -1651,6 +1682,18 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
         readSeatBidField(par, seatbid, fieldName);
       }
     }
+    if (bidFilter != null) {
+      // Only checked now, because fields like seat can come after the bids.
+      List<Bid.Builder> oldBids = seatbid.getBidBuilderList();
+      List<Bid.Builder> newBids =
+          ProtoUtils.filter(oldBids, bid -> bidFilter.accept(seatbid, bid));
+      if (newBids != oldBids) {
+        seatbid.clearBid();
+        for (Bid.Builder bid : newBids) {
+          seatbid.addBid(bid);
+        }
+      }
+    }
     return seatbid;
   }
 
@@ -1659,7 +1702,10 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
     switch (fieldName) {
       case "bid":
         for (startArray(par); endArray(par); par.nextToken()) {
-          seatbid.addBid(readBid(par));
+          Bid.Builder bid = readBid(par, seatbid, bidFilter);
+          if (bid != null) {
+            seatbid.addBid(bid);
+          }
         }
         break;
       case "seat":
@@ -1674,13 +1720,34 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
   }
 
   public final Bid.Builder readBid(JsonParser par) throws IOException {
+    return readBid(par, null, null);
+  }
+
+  /**
+   * Reads a bid, skipping its markup if the filter says so.
+   *
+   * @return the bid, or {@code null} if its markup was skipped
+   */
+  @Nullable private Bid.Builder readBid(JsonParser par, @Nullable SeatBid.Builder seatbid,
+      @Nullable OpenRtbJsonBidFilter filter) throws IOException {
     Bid.Builder bid = Bid.newBuilder();
+    boolean skippedMarkup = false;
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
       if (par.nextToken() != JsonToken.VALUE_NULL) {
-        readBidField(par, bid, fieldName);
+        if (filter != null && "adm".equals(fieldName) && !filter.readMarkup(bid)) {
+          // Strings are skipped without decoding them.
+          par.skipChildren();
+          skippedMarkup = true;
+        } else {
+          readBidField(par, bid, fieldName);
+        }
       }
     }
+    if (skippedMarkup) {
+      filter.rejectedEarly(seatbid, bid);
+      return null;
+    }
     return bid;
   }
 
@@ -1706,7 +1773,10 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
         if (par.getCurrentToken() == JsonToken.VALUE_STRING) {
           String valueString = par.getText();
           if (valueString.startsWith("{")) {
-            bid.setAdmNative(factory().newNativeReader().readNativeResponse(valueString));
+            try (JsonParser nativePar =
+                factory().getTextJsonFactory().createParser(valueString)) {
+              bid.setAdmNative(factory().newNativeReader().readNativeResponse(nativePar));
+            }
           } else {
             bid.setAdm(valueString);
           }
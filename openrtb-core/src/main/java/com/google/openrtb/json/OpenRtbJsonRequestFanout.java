@@ -0,0 +1,184 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.protobuf.Message;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import javax.annotation.Nullable;
+
+/**
+ * Serializes many variants of the same base {@link BidRequest}, typically one for each bidder
+ * that an exchange sends the request to. The {@code site}/{@code app}, {@code device},
+ * {@code user}, {@code regs} and {@code source} objects of the base request are serialized
+ * only once, and those bytes are spliced into every variant that still shares these objects.
+ * Other properties, like the {@code imp}s or extensions, are written for each variant with
+ * the {@link OpenRtbJsonWriter}'s {@code write*()} methods.
+ *
+ * <p>Variants should be created with {@link #newVariant()}, or otherwise from the base request's
+ * {@code toBuilder()}, so they keep the base request's child objects unless these are replaced
+ * (overrides) or cleared (masks). Children are matched by identity, so calling any
+ * {@code get*Builder()} method for a shared child will cause it to be serialized again.
+ * Variants are written by the writer's {@code writeBidRequestFields()}, so the output is
+ * the same as {@link OpenRtbJsonWriter#writeBidRequest(BidRequest, JsonGenerator)}, including
+ * any customizations from writer subclasses; shared children are spliced through
+ * {@link OpenRtbJsonWriter#writeShared}.
+ *
+ * <p>Splicing requires a textual JSON factory; for other factories this will just delegate
+ * all work to the writer.
+ *
+ * <p>This class is threadsafe.
+ */
+public class OpenRtbJsonRequestFanout {
+  private static final int SITE = 0;
+  private static final int APP = 1;
+  private static final int DEVICE = 2;
+  private static final int USER = 3;
+  private static final int REGS = 4;
+  private static final int SOURCE = 5;
+
+  private final OpenRtbJsonWriter writer;
+  private final BidRequest base;
+  private final Message[] sharedMsgs;
+  private final RawJsonString[] sharedJson;
+
+  protected OpenRtbJsonRequestFanout(OpenRtbJsonWriter writer, BidRequest base)
+      throws IOException {
+    this.writer = writer;
+    this.base = base;
+    this.sharedMsgs = new Message[] {
+        base.hasSite() ? base.getSite() : null,
+        base.hasApp() ? base.getApp() : null,
+        base.hasDevice() ? base.getDevice() : null,
+        base.hasUser() ? base.getUser() : null,
+        base.hasRegs() ? base.getRegs() : null,
+        base.hasSource() ? base.getSource() : null };
+    this.sharedJson = new RawJsonString[sharedMsgs.length];
+
+    if (writer.factory().isTextual()) {
+      JsonFactory jsonFactory = writer.factory().getJsonFactory();
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      for (int i = 0; i < sharedMsgs.length; ++i) {
+        if (sharedMsgs[i] != null) {
+          os.reset();
+          try (JsonGenerator gen = jsonFactory.createGenerator(os)) {
+            writeChild(i, sharedMsgs[i], gen);
+          }
+          sharedJson[i] = new RawJsonString(os.toByteArray());
+        }
+      }
+    }
+  }
+
+  public final OpenRtbJsonWriter writer() {
+    return writer;
+  }
+
+  public final BidRequest base() {
+    return base;
+  }
+
+  /**
+   * Returns a builder for a new variant, initialized with all properties of the base request.
+   */
+  public BidRequest.Builder newVariant() {
+    return base.toBuilder();
+  }
+
+  /**
+   * Serializes a variant {@link BidRequest} to JSON, returned as a {@code String}.
+   */
+  public String writeBidRequest(BidRequest req) throws IOException {
+    try (StringWriter sw = new StringWriter()) {
+      writeBidRequest(req, sw);
+      return sw.toString();
+    }
+  }
+
+  /**
+   * Serializes a variant {@link BidRequest} to JSON, streamed into an {@link Writer}.
+   *
+   * @see JsonFactory#createGenerator(Writer)
+   */
+  public void writeBidRequest(BidRequest req, Writer writer) throws IOException {
+    writeBidRequest(req, this.writer.factory().getJsonFactory().createGenerator(writer));
+  }
+
+  /**
+   * Serializes a variant {@link BidRequest} to JSON, streamed into an {@link OutputStream}.
+   *
+   * @see JsonFactory#createGenerator(OutputStream)
+   */
+  public void writeBidRequest(BidRequest req, OutputStream os) throws IOException {
+    writeBidRequest(req, writer.factory().getJsonFactory().createGenerator(os));
+  }
+
+  /**
+   * Serializes a variant {@link BidRequest} to JSON, with a provided {@link JsonGenerator}.
+   */
+  public final void writeBidRequest(BidRequest req, JsonGenerator gen) throws IOException {
+    writer.writeBidRequest(req, gen, this);
+  }
+
+  /**
+   * Writes a child of the request being serialized, if that is still one of the base request's
+   * serialized children.
+   *
+   * @return {@code true} if the child was written
+   */
+  boolean writeShared(Message child, JsonGenerator gen) throws IOException {
+    for (int i = 0; i < sharedMsgs.length; ++i) {
+      if (sharedMsgs[i] == child) {
+        @Nullable RawJsonString json = sharedJson[i];
+        if (json == null) {
+          return false;
+        }
+        gen.writeRawValue(json);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void writeChild(int index, Message msg, JsonGenerator gen) throws IOException {
+    switch (index) {
+      case SITE:
+        writer.writeSite((BidRequest.Site) msg, gen);
+        break;
+      case APP:
+        writer.writeApp((BidRequest.App) msg, gen);
+        break;
+      case DEVICE:
+        writer.writeDevice((BidRequest.Device) msg, gen);
+        break;
+      case USER:
+        writer.writeUser((BidRequest.User) msg, gen);
+        break;
+      case REGS:
+        writer.writeRegs((BidRequest.Regs) msg, gen);
+        break;
+      default:
+        writer.writeSource((BidRequest.Source) msg, gen);
+    }
+  }
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.openrtb.json.JsonBytes.copyPlainAscii;
+import static com.google.openrtb.json.JsonBytes.escape;
+import static com.google.openrtb.json.JsonBytes.indexOf;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pre-serialized {@link BidResponse} template, for responses that share the same structure
+ * and only differ in a few values: the response's {@code id} and {@code bidid}; each bid's
+ * {@code id}, {@code impid} and {@code price}; and optionally some parameters, which are
+ * placeholder tokens used inside other string fields such as the {@code adm}.
+ *
+ * <p>The prototype response is serialized only once into a byte template with slots for
+ * those values. Each response is then written by an {@link Instance}, that just splices the
+ * escaped slot values between the template's literal segments: this is the fast path, and
+ * the caller is responsible for using it only for responses that have the prototype's
+ * values in all other fields. Slots are only found in string and number values, never in
+ * field names. {@link #writeBidResponse(BidResponse, OutputStream)} is a convenience for
+ * {@link BidResponse} objects, that falls back to the full {@link OpenRtbJsonWriter} for
+ * responses that differ from the prototype in anything but the slot values.
+ *
+ * <p>Templates only support textual JSON factories, with their default character escaping.
+ *
+ * <p>This class is threadsafe; but its {@link Instance}s are NOT threadsafe.
+ */
+public class OpenRtbJsonResponseTemplate {
+  private static final String SENTINEL = "__OPENRTB_SLOT_";
+  private static final int SLOT_ID = 0;
+  private static final int SLOT_BIDID = 1;
+  private static final int SLOTS_RESPONSE = 2;
+  private static final int SLOTS_BID = 3;
+  private static final int BID_ID = 0;
+  private static final int BID_IMPID = 1;
+  private static final int BID_PRICE = 2;
+  private static final int VALUE_STRING = 0;
+  private static final int VALUE_NUMBER = 1;
+  private static final int VALUE_SLOT = 2;
+
+  private final OpenRtbJsonWriter writer;
+  private final boolean hasBidid;
+  private final BidResponse withoutSlots;
+  private final int[] seatBase;
+  private final int bidCount;
+  private final ImmutableMap<String, Integer> paramSlots;
+  private final String[] defaultStrings;
+  private final double[] defaultPrices;
+  private final byte[][] literals;
+  private final int[] layout;
+  private final int templateSize;
+  private final ThreadLocal<Instance> threadInstance = ThreadLocal.withInitial(Instance::new);
+
+  protected OpenRtbJsonResponseTemplate(
+      OpenRtbJsonWriter writer, BidResponse prototype, List<String> params) throws IOException {
+    checkArgument(writer.factory().isTextual(), "Templates need a textual JSON factory: %s",
+        writer.factory().getJsonFactory().getFormatName());
+    this.writer = writer;
+    this.hasBidid = prototype.hasBidid();
+    this.withoutSlots = withoutSlots(prototype);
+
+    this.seatBase = new int[prototype.getSeatbidCount() + 1];
+    for (int i = 0; i < prototype.getSeatbidCount(); ++i) {
+      seatBase[i + 1] = seatBase[i] + prototype.getSeatbid(i).getBidCount();
+    }
+    this.bidCount = seatBase[seatBase.length - 1];
+
+    ImmutableMap.Builder<String, Integer> paramSlots = ImmutableMap.builder();
+    for (int i = 0; i < params.size(); ++i) {
+      paramSlots.put(checkNotNull(params.get(i)), paramSlot(i));
+    }
+    this.paramSlots = paramSlots.build();
+
+    // Serialize a copy of the prototype that has unique sentinels in all value slots,
+    // then find these sentinels (and the parameters) to split the literal segments.
+
+    this.defaultStrings = new String[paramSlot(params.size())];
+    this.defaultPrices = new double[bidCount];
+    defaultStrings[SLOT_ID] = prototype.getId();
+    defaultStrings[SLOT_BIDID] = prototype.getBidid();
+    BidResponse.Builder sentinels = prototype.toBuilder().setId(sentinel(SLOT_ID));
+    if (hasBidid) {
+      sentinels.setBidid(sentinel(SLOT_BIDID));
+    }
+    int bidIndex = 0;
+    for (SeatBid.Builder seatbid : sentinels.getSeatbidBuilderList()) {
+      for (Bid.Builder bid : seatbid.getBidBuilderList()) {
+        defaultStrings[bidSlot(bidIndex, BID_ID)] = bid.getId();
+        defaultStrings[bidSlot(bidIndex, BID_IMPID)] = bid.getImpid();
+        defaultPrices[bidIndex] = bid.getPrice();
+        bid.setId(sentinel(bidSlot(bidIndex, BID_ID)))
+            .setImpid(sentinel(bidSlot(bidIndex, BID_IMPID)))
+            .setPrice(sentinelPrice(bidIndex));
+        ++bidIndex;
+      }
+    }
+    for (int i = 0; i < params.size(); ++i) {
+      defaultStrings[paramSlot(i)] = params.get(i);
+    }
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    writer.writeBidResponse(sentinels.build(), os);
+    byte[] json = os.toByteArray();
+
+    List<int[]> values = findValues(json);
+    List<int[]> found = new ArrayList<>();
+    findSingle(json, values, SLOT_ID, true, sentinel(SLOT_ID), found);
+    if (hasBidid) {
+      findSingle(json, values, SLOT_BIDID, true, sentinel(SLOT_BIDID), found);
+    }
+    for (int i = 0; i < bidCount; ++i) {
+      findSingle(json, values, bidSlot(i, BID_ID), true, sentinel(bidSlot(i, BID_ID)), found);
+      findSingle(json, values, bidSlot(i, BID_IMPID), true,
+          sentinel(bidSlot(i, BID_IMPID)), found);
+      findSingle(json, values, bidSlot(i, BID_PRICE), false,
+          Double.toString(sentinelPrice(i)), found);
+    }
+    for (int i = 0; i < params.size(); ++i) {
+      byte[] pattern = escape(params.get(i));
+      checkArgument(pattern.length != 0, "Empty template parameter");
+      int count = 0;
+      for (int[] value : values) {
+        if (value[2] == VALUE_STRING) {
+          for (int pos = indexOf(json, pattern, value[0], value[1]); pos != -1;
+              pos = indexOf(json, pattern, pos + pattern.length, value[1])) {
+            found.add(new int[] { pos, pattern.length, paramSlot(i) });
+            ++count;
+          }
+        }
+      }
+      checkArgument(count != 0, "Template parameter not found: %s", params.get(i));
+    }
+    found.sort((s1, s2) -> Integer.compare(s1[0], s2[0]));
+
+    this.literals = new byte[found.size() + 1][];
+    this.layout = new int[found.size()];
+    int literalStart = 0;
+    for (int i = 0; i < found.size(); ++i) {
+      int[] slot = found.get(i);
+      checkArgument(slot[0] >= literalStart, "Template slots overlap");
+      literals[i] = Arrays.copyOfRange(json, literalStart, slot[0]);
+      layout[i] = slot[2];
+      literalStart = slot[0] + slot[1];
+    }
+    literals[found.size()] = Arrays.copyOfRange(json, literalStart, json.length);
+    this.templateSize = json.length;
+  }
+
+  /**
+   * Returns the writer used for the prototype, and for the fallback of responses that
+   * don't match the template.
+   */
+  public final OpenRtbJsonWriter writer() {
+    return writer;
+  }
+
+  /**
+   * Returns the template's parameters, in the same order they were provided.
+   */
+  public final ImmutableList<String> params() {
+    return paramSlots.keySet().asList();
+  }
+
+  /**
+   * Creates a new instance, initialized with all the prototype's values. Instances are
+   * reusable, so you can keep one per thread and just overwrite its values for each response.
+   */
+  public Instance newInstance() {
+    return new Instance();
+  }
+
+  /**
+   * Returns {@code true} if a response can be written by the template: it has the same
+   * number of seats, of bids in each seat, and presence of {@code bidid} as the prototype,
+   * and it's equal to the prototype in all fields except the slot values. Parameters are
+   * not slots here, so the fields that contain them must be the prototype's.
+   * Responses with a different shape are rejected cheaply; the others need a copy of the
+   * response without its slot values, that is compared to the prototype's.
+   */
+  public boolean matches(BidResponse resp) {
+    if (resp.hasBidid() != hasBidid || resp.getSeatbidCount() != seatBase.length - 1) {
+      return false;
+    }
+    for (int i = 0; i < resp.getSeatbidCount(); ++i) {
+      if (resp.getSeatbid(i).getBidCount() != seatBase[i + 1] - seatBase[i]) {
+        return false;
+      }
+    }
+    return withoutSlots(resp).equals(withoutSlots);
+  }
+
+  /**
+   * Serializes a {@link BidResponse} to JSON, streamed to a {@link OutputStream}. Uses the
+   * template, with an {@link Instance} reused by the current thread, if the response
+   * {@link #matches(BidResponse)} it; otherwise falls back to the full writer.
+   */
+  public void writeBidResponse(BidResponse resp, OutputStream os) throws IOException {
+    if (matches(resp)) {
+      threadInstance.get().reset().setValues(resp).writeTo(os);
+    } else {
+      writer.writeBidResponse(resp, os);
+    }
+  }
+
+  /**
+   * Returns a copy of a response with the values of all slots cleared.
+   */
+  private static BidResponse withoutSlots(BidResponse resp) {
+    BidResponse.Builder cleared = resp.toBuilder().clearId().clearBidid();
+    for (SeatBid.Builder seatbid : cleared.getSeatbidBuilderList()) {
+      for (Bid.Builder bid : seatbid.getBidBuilderList()) {
+        bid.clearId().clearImpid().clearPrice();
+      }
+    }
+    return cleared.buildPartial();
+  }
+
+  private static String sentinel(int slot) {
+    return SENTINEL + slot + "__";
+  }
+
+  private static double sentinelPrice(int bidIndex) {
+    return -(bidIndex + 1) * 1.0E-300;
+  }
+
+  private static int bidSlot(int bidIndex, int field) {
+    return SLOTS_RESPONSE + bidIndex * SLOTS_BID + field;
+  }
+
+  private int paramSlot(int paramIndex) {
+    return SLOTS_RESPONSE + bidCount * SLOTS_BID + paramIndex;
+  }
+
+  /**
+   * Finds the string and number values of a JSON document, skipping field names.
+   *
+   * @return {start, end, type} of each value; the range of strings excludes the quotes
+   */
+  private static List<int[]> findValues(byte[] json) {
+    List<int[]> values = new ArrayList<>();
+    for (int i = 0; i < json.length; ) {
+      byte b = json[i];
+      if (b == '"') {
+        int start = ++i;
+        while (json[i] != '"') {
+          i += json[i] == '\\' ? 2 : 1;
+        }
+        int end = i++;
+        int next = i;
+        while (next < json.length && (json[next] == ' ' || json[next] == '\n'
+            || json[next] == '\r' || json[next] == '\t')) {
+          ++next;
+        }
+        if (next == json.length || json[next] != ':') {
+          values.add(new int[] { start, end, VALUE_STRING });
+        }
+      } else if (b == '-' || (b >= '0' && b <= '9')) {
+        int start = i;
+        while (i < json.length && (json[i] == '-' || json[i] == '+' || json[i] == '.'
+            || json[i] == 'e' || json[i] == 'E' || (json[i] >= '0' && json[i] <= '9'))) {
+          ++i;
+        }
+        values.add(new int[] { start, i, VALUE_NUMBER });
+      } else {
+        ++i;
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Finds the single string or number value that is exactly some sentinel, and marks it as
+   * a slot so it's not searched for parameters.
+   */
+  private static void findSingle(byte[] json, List<int[]> values, int slot, boolean string,
+      String sentinel, List<int[]> found) {
+    byte[] pattern = sentinel.getBytes(StandardCharsets.US_ASCII);
+    int[] match = null;
+    for (int[] value : values) {
+      if ((value[2] == VALUE_STRING) == string && value[1] - value[0] == pattern.length
+          && indexOf(json, pattern, value[0], value[1]) == value[0]) {
+        checkArgument(match == null, "Template slot ambiguous: %s", sentinel);
+        match = value;
+      }
+    }
+    checkArgument(match != null, "Template slot not found: %s", sentinel);
+    match[2] = VALUE_SLOT;
+    found.add(new int[] { match[0], pattern.length, slot });
+  }
+
+  /**
+   * One response written from the template. Setters accept the same values as the
+   * corresponding {@link BidResponse} fields; string values are escaped by the instance.
+   *
+   * <p>This class is NOT threadsafe.
+   */
+  public final class Instance {
+    private final String[] strings = defaultStrings.clone();
+    private final double[] prices = defaultPrices.clone();
+    private byte[] buffer = new byte[templateSize + (templateSize >> 2)];
+    private int size;
+
+    private Instance() {
+    }
+
+    public OpenRtbJsonResponseTemplate template() {
+      return OpenRtbJsonResponseTemplate.this;
+    }
+
+    /**
+     * Restores all values to the prototype's.
+     */
+    public Instance reset() {
+      System.arraycopy(defaultStrings, 0, strings, 0, strings.length);
+      System.arraycopy(defaultPrices, 0, prices, 0, prices.length);
+      return this;
+    }
+
+    public Instance setId(String id) {
+      strings[SLOT_ID] = checkNotNull(id);
+      return this;
+    }
+
+    /**
+     * Sets the {@code bidid}. The prototype must also have a {@code bidid}.
+     */
+    public Instance setBidid(String bidid) {
+      checkArgument(hasBidid, "Template prototype has no bidid");
+      strings[SLOT_BIDID] = checkNotNull(bidid);
+      return this;
+    }
+
+    public Instance setBidId(int seatIndex, int bidIndex, String id) {
+      strings[bidSlot(bidIndex(seatIndex, bidIndex), BID_ID)] = checkNotNull(id);
+      return this;
+    }
+
+    public Instance setImpid(int seatIndex, int bidIndex, String impid) {
+      strings[bidSlot(bidIndex(seatIndex, bidIndex), BID_IMPID)] = checkNotNull(impid);
+      return this;
+    }
+
+    public Instance setPrice(int seatIndex, int bidIndex, double price) {
+      checkArgument(Double.isFinite(price), "Invalid price: %s", price);
+      prices[bidIndex(seatIndex, bidIndex)] = price;
+      return this;
+    }
+
+    /**
+     * Sets the value that replaces all occurrences of a template parameter.
+     */
+    public Instance setParam(String param, String value) {
+      Integer slot = paramSlots.get(param);
+      checkArgument(slot != null, "Not a template parameter: %s", param);
+      strings[slot] = checkNotNull(value);
+      return this;
+    }
+
+    /**
+     * Sets all slot values from a response, which must {@link #matches(BidResponse)} the
+     * template. Parameters are not modified.
+     */
+    public Instance setValues(BidResponse resp) {
+      strings[SLOT_ID] = resp.getId();
+      strings[SLOT_BIDID] = resp.getBidid();
+      int bidIndex = 0;
+      for (SeatBid seatbid : resp.getSeatbidList()) {
+        for (Bid bid : seatbid.getBidList()) {
+          strings[bidSlot(bidIndex, BID_ID)] = bid.getId();
+          strings[bidSlot(bidIndex, BID_IMPID)] = bid.getImpid();
+          prices[bidIndex] = bid.getPrice();
+          ++bidIndex;
+        }
+      }
+      return this;
+    }
+
+    /**
+     * Writes the response's JSON to a stream.
+     */
+    public void writeTo(OutputStream os) throws IOException {
+      render();
+      os.write(buffer, 0, size);
+    }
+
+    /**
+     * Returns the response's JSON, encoded as UTF-8.
+     */
+    public byte[] toByteArray() {
+      render();
+      return Arrays.copyOf(buffer, size);
+    }
+
+    private int bidIndex(int seatIndex, int bidIndex) {
+      checkElementIndex(seatIndex, seatBase.length - 1, "seatIndex");
+      checkElementIndex(bidIndex, seatBase[seatIndex + 1] - seatBase[seatIndex], "bidIndex");
+      return seatBase[seatIndex] + bidIndex;
+    }
+
+    private void render() {
+      size = 0;
+      for (int i = 0; i < layout.length; ++i) {
+        append(literals[i]);
+        int slot = layout[i];
+        int bidField = slot - SLOTS_RESPONSE;
+        if (bidField >= 0 && bidField < bidCount * SLOTS_BID && bidField % SLOTS_BID == BID_PRICE) {
+          appendAscii(Double.toString(prices[bidField / SLOTS_BID]));
+        } else {
+          appendEscaped(strings[slot]);
+        }
+      }
+      append(literals[layout.length]);
+    }
+
+    private void append(byte[] bytes) {
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, size, bytes.length);
+      size += bytes.length;
+    }
+
+    private void appendAscii(String s) {
+      ensureCapacity(s.length());
+      for (int i = 0; i < s.length(); ++i) {
+        buffer[size++] = (byte) s.charAt(i);
+      }
+    }
+
+    private void appendEscaped(String s) {
+      ensureCapacity(s.length());
+      if (copyPlainAscii(s, buffer, size)) {
+        size += s.length();
+      } else {
+        append(escape(s));
+      }
+    }
+
+    private void ensureCapacity(int extra) {
+      if (size + extra > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(size + extra, buffer.length << 1));
+      }
+    }
+  }
+}
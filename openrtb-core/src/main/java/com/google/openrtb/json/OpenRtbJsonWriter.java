@@ -23,6 +23,7 @@ import static com.google.openrtb.json.OpenRtbJsonUtils.writeStrings;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.collect.ImmutableList;
 import com.google.openrtb.Gender;
 import com.google.openrtb.OpenRtb.BidRequest;
 import com.google.openrtb.OpenRtb.BidRequest.App;
@@ -50,10 +51,13 @@ import com.google.openrtb.OpenRtb.BidRequest.User;
 import com.google.openrtb.OpenRtb.BidResponse;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.protobuf.Message;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.concurrent.ForkJoinPool;
+import javax.annotation.Nullable;
 
 /**
  * Serializes OpenRTB {@link BidRequest}/{@link BidResponse} messages to JSON.
@@ -105,13 +109,32 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
    * which allows several choices of output and encoding.
    */
   public final void writeBidRequest(BidRequest req, JsonGenerator gen) throws IOException {
+    writeBidRequest(req, gen, null);
+  }
+
+  final void writeBidRequest(
+      BidRequest req, JsonGenerator gen, @Nullable OpenRtbJsonRequestFanout fanout)
+      throws IOException {
     gen.writeStartObject();
+    if (fanout != null) {
+      gen.setCurrentValue(fanout);
+    }
     writeBidRequestFields(req, gen);
     writeExtensions(req, gen);
     gen.writeEndObject();
     gen.flush();
   }
 
+  /**
+   * Creates a writer for many variants of a base request, that will serialize the base
+   * request's shared child objects only once.
+   *
+   * @see OpenRtbJsonRequestFanout
+   */
+  public OpenRtbJsonRequestFanout newRequestFanout(BidRequest base) throws IOException {
+    return new OpenRtbJsonRequestFanout(this, base);
+  }
+
   protected void writeBidRequestFields(BidRequest req, JsonGenerator gen) throws IOException {
     gen.writeStringField("id", req.getId());
     if (checkRequired(req.getImpCount())) {
@@ -124,22 +147,30 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
     switch (req.getDistributionchannelOneofCase()) {
       case SITE:
         gen.writeFieldName("site");
-        writeSite(req.getSite(), gen);
+        if (!writeShared(req.getSite(), gen)) {
+          writeSite(req.getSite(), gen);
+        }
         break;
       case APP:
         gen.writeFieldName("app");
-        writeApp(req.getApp(), gen);
+        if (!writeShared(req.getApp(), gen)) {
+          writeApp(req.getApp(), gen);
+        }
         break;
       case DISTRIBUTIONCHANNELONEOF_NOT_SET:
         checkRequired(false);
     }
     if (req.hasDevice()) {
       gen.writeFieldName("device");
-      writeDevice(req.getDevice(), gen);
+      if (!writeShared(req.getDevice(), gen)) {
+        writeDevice(req.getDevice(), gen);
+      }
     }
     if (req.hasUser()) {
       gen.writeFieldName("user");
-      writeUser(req.getUser(), gen);
+      if (!writeShared(req.getUser(), gen)) {
+        writeUser(req.getUser(), gen);
+      }
     }
     if (req.hasTest()) {
       writeIntBoolField("test", req.getTest(), gen);
@@ -159,17 +190,34 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
     writeStrings("badv", req.getBadvList(), gen);
     if (req.hasRegs()) {
       gen.writeFieldName("regs");
-      writeRegs(req.getRegs(), gen);
+      if (!writeShared(req.getRegs(), gen)) {
+        writeRegs(req.getRegs(), gen);
+      }
     }
     writeStrings("bapp", req.getBappList(), gen);
     writeStrings("bseat", req.getBseatList(), gen);
     writeStrings("wlang", req.getWlangList(), gen);
     if (req.hasSource()) {
       gen.writeFieldName("source");
-      writeSource(req.getSource(), gen);
+      if (!writeShared(req.getSource(), gen)) {
+        writeSource(req.getSource(), gen);
+      }
     }
   }
 
+  /**
+   * Writes a child object of the {@link BidRequest}, like its {@code site} or {@code device},
+   * from the bytes already serialized by the {@link OpenRtbJsonRequestFanout} that is writing
+   * this request, if any.
+   *
+   * @return {@code true} if the child was written; otherwise the caller must write it
+   */
+  protected final boolean writeShared(Message child, JsonGenerator gen) throws IOException {
+    Object fanout = gen.getCurrentValue();
+    return fanout instanceof OpenRtbJsonRequestFanout
+        && ((OpenRtbJsonRequestFanout) fanout).writeShared(child, gen);
+  }
+
   public final void writeImp(Imp imp, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     writeImpFields(imp, gen);
@@ -1102,6 +1150,38 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
     gen.flush();
   }
 
+  /**
+   * Creates a pre-serialized template for responses with the same shape of a prototype.
+   *
+   * @param prototype Response with the structure and constant values of the template
+   * @param params Placeholder tokens used in the prototype's string fields, that will be
+   *     replaced by each instance of the template
+   * @see OpenRtbJsonResponseTemplate
+   */
+  public OpenRtbJsonResponseTemplate newResponseTemplate(BidResponse prototype, String... params)
+      throws IOException {
+    return new OpenRtbJsonResponseTemplate(this, prototype, ImmutableList.copyOf(params));
+  }
+
+  /**
+   * Creates a writer that serializes large responses, or batches of requests or responses,
+   * in parallel.
+   *
+   * @see OpenRtbJsonParallelWriter
+   */
+  public OpenRtbJsonParallelWriter newParallelWriter(ForkJoinPool pool) {
+    return new OpenRtbJsonParallelWriter(this, pool);
+  }
+
+  /**
+   * Creates a writer for no-bid responses, using pre-serialized templates.
+   *
+   * @see OpenRtbJsonNoBidWriter
+   */
+  public OpenRtbJsonNoBidWriter newNoBidWriter() throws IOException {
+    return new OpenRtbJsonNoBidWriter(this);
+  }
+
   protected void writeBidResponseFields(BidResponse resp, JsonGenerator gen) throws IOException {
     gen.writeStringField("id", resp.getId());
     if (resp.getSeatbidCount() != 0) {
@@ -1111,6 +1191,15 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
       }
       gen.writeEndArray();
     }
+    writeBidResponseTailFields(resp, gen);
+  }
+
+  /**
+   * Writes the fields of a {@link BidResponse} that follow the {@code seatbid} array.
+   * This is shared with {@link OpenRtbJsonParallelWriter}, which writes the seats separately.
+   */
+  protected void writeBidResponseTailFields(BidResponse resp, JsonGenerator gen)
+      throws IOException {
     if (resp.hasBidid()) {
       gen.writeStringField("bidid", resp.getBidid());
     }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.BufferRecyclers;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pre-serialized JSON content, that can be spliced in the output of a textual
+ * {@link JsonGenerator} with {@link JsonGenerator#writeRawValue(SerializableString)}.
+ * The unquoted forms are the raw JSON, without any escaping; the quoted forms are only
+ * provided to honor the interface contract.
+ *
+ * <p>This class is threadsafe.
+ */
+final class RawJsonString implements SerializableString {
+  private final byte[] utf8;
+  private String value;
+
+  RawJsonString(byte[] utf8) {
+    this.utf8 = utf8;
+  }
+
+  @Override public String getValue() {
+    String ret = value;
+    if (ret == null) {
+      value = ret = new String(utf8, StandardCharsets.UTF_8);
+    }
+    return ret;
+  }
+
+  @Override public int charLength() {
+    return getValue().length();
+  }
+
+  @Override public char[] asQuotedChars() {
+    return BufferRecyclers.getJsonStringEncoder().quoteAsString(getValue());
+  }
+
+  @Override public byte[] asUnquotedUTF8() {
+    return utf8;
+  }
+
+  @Override public byte[] asQuotedUTF8() {
+    return BufferRecyclers.getJsonStringEncoder().quoteAsUTF8(getValue());
+  }
+
+  @Override public int appendQuotedUTF8(byte[] buffer, int offset) {
+    return append(asQuotedUTF8(), buffer, offset);
+  }
+
+  @Override public int appendQuoted(char[] buffer, int offset) {
+    return append(asQuotedChars(), buffer, offset);
+  }
+
+  @Override public int appendUnquotedUTF8(byte[] buffer, int offset) {
+    return append(utf8, buffer, offset);
+  }
+
+  @Override public int appendUnquoted(char[] buffer, int offset) {
+    return append(getValue().toCharArray(), buffer, offset);
+  }
+
+  @Override public int writeQuotedUTF8(OutputStream os) throws IOException {
+    byte[] quoted = asQuotedUTF8();
+    os.write(quoted);
+    return quoted.length;
+  }
+
+  @Override public int writeUnquotedUTF8(OutputStream os) throws IOException {
+    os.write(utf8);
+    return utf8.length;
+  }
+
+  @Override public int putQuotedUTF8(ByteBuffer buffer) {
+    return put(asQuotedUTF8(), buffer);
+  }
+
+  @Override public int putUnquotedUTF8(ByteBuffer buffer) {
+    return put(utf8, buffer);
+  }
+
+  @Override public String toString() {
+    return getValue();
+  }
+
+  private static int append(byte[] src, byte[] buffer, int offset) {
+    if (offset + src.length > buffer.length) {
+      return -1;
+    }
+    System.arraycopy(src, 0, buffer, offset, src.length);
+    return src.length;
+  }
+
+  private static int append(char[] src, char[] buffer, int offset) {
+    if (offset + src.length > buffer.length) {
+      return -1;
+    }
+    System.arraycopy(src, 0, buffer, offset, src.length);
+    return src.length;
+  }
+
+  private static int put(byte[] src, ByteBuffer buffer) {
+    if (src.length > buffer.remaining()) {
+      return -1;
+    }
+    buffer.put(src);
+    return src.length;
+  }
+}
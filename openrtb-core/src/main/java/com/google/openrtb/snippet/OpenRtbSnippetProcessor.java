@@ -20,31 +20,83 @@ import com.google.common.collect.ImmutableList;
 import com.google.openrtb.OpenRtb.BidRequest.ImpOrBuilder;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
-import com.google.openrtb.OpenRtb.BidResponse.SeatBid.BidOrBuilder;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBidOrBuilder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.annotation.Nullable;
 import javax.inject.Singleton;
 
 /**
  * Default {@link SnippetProcessor}.
+ *
+ * <p>The values of the standard macros can be memoized (see {@link #macroScope}), so
+ * {@link #processMacroAt} is only called once for each request, impression, seat or bid as
+ * appropriate, not for every occurrence of the macro. This is the default for this class,
+ * but subclasses must opt in with {@link #OpenRtbSnippetProcessor(boolean, boolean)}, because
+ * they may override {@code processMacroAt()} to compute a standard macro for each bid.
  */
 @Singleton
 public class OpenRtbSnippetProcessor extends SnippetProcessor {
   public static final OpenRtbSnippetProcessor ORTB_NULL = new OpenRtbSnippetProcessor(false) {
     @Override public String process(SnippetProcessorContext ctx, String snippet) {
       return SnippetProcessor.NULL.process(ctx, snippet);
+    }
+
+    @Override public String process(SnippetProcessorContext ctx, SnippetTemplate template) {
+      return SnippetProcessor.NULL.process(ctx, template);
+    }
+
+    @Override public void process(SnippetProcessorContext ctx, String snippet, Appendable out)
+        throws IOException {
+      SnippetProcessor.NULL.process(ctx, snippet, out);
+    }
+
+    @Override public void process(SnippetProcessorContext ctx, String snippet, ByteBuffer out) {
+      SnippetProcessor.NULL.process(ctx, snippet, out);
+    }
+
+    @Override public void process(
+        SnippetProcessorContext ctx, SnippetTemplate template, Appendable out)
+        throws IOException {
+      SnippetProcessor.NULL.process(ctx, template, out);
+    }
+
+    @Override public void process(
+        SnippetProcessorContext ctx, SnippetTemplate template, ByteBuffer out) {
+      SnippetProcessor.NULL.process(ctx, template, out);
     }};
 
+  private static final int PARALLEL_BATCH_SIZE = 4;
+
   private final boolean extendedFields;
+  private final boolean memoizeStandardMacros;
 
   /**
-   * Creates a processor.
+   * Creates a processor. The standard macros are only memoized if this is not a subclass.
    *
    * @param extendedFields {@code true} will support macro substitution in all {@link Bid}
    *     fields of string type, not only the {@code adm} field mandated by the spec
    */
   public OpenRtbSnippetProcessor(boolean extendedFields) {
     this.extendedFields = extendedFields;
+    this.memoizeStandardMacros = getClass() == OpenRtbSnippetProcessor.class;
+  }
+
+  /**
+   * Creates a processor.
+   *
+   * @param extendedFields {@code true} will support macro substitution in all {@link Bid}
+   *     fields of string type, not only the {@code adm} field mandated by the spec
+   * @param memoizeStandardMacros {@code true} to memoize the values of the standard macros,
+   *     see {@link #macroScope(SnippetMacroType)}
+   */
+  public OpenRtbSnippetProcessor(boolean extendedFields, boolean memoizeStandardMacros) {
+    this.extendedFields = extendedFields;
+    this.memoizeStandardMacros = memoizeStandardMacros;
   }
 
   /**
@@ -115,18 +167,69 @@ public class OpenRtbSnippetProcessor extends SnippetProcessor {
     return false;
   }
 
+  /**
+   * If enabled, values of the standard macros are memoized for the request, except for
+   * the ones that depend on the bid, its impression or its seat. Subclasses that enable this
+   * and change the value of a standard macro in {@link #processMacroAt} must keep this
+   * consistent.
+   */
+  @Override @Nullable protected SnippetMacroScope macroScope(SnippetMacroType macroDef) {
+    if (macroDef instanceof OpenRtbMacros) {
+      if (!memoizeStandardMacros) {
+        return null;
+      }
+      switch ((OpenRtbMacros) macroDef) {
+        case AUCTION_AD_ID:
+          return SnippetMacroScope.BID;
+        case AUCTION_IMP_ID:
+          return SnippetMacroScope.IMP;
+        case AUCTION_SEAT_ID:
+          return SnippetMacroScope.SEAT;
+        default:
+          return SnippetMacroScope.REQUEST;
+      }
+    }
+    return super.macroScope(macroDef);
+  }
+
   /**
    * Processes the context's response in-place, modifying properties that may contain macros.
+   * Memoized macro values, including the values of {@link SnippetMacroProvider}s, are shared
+   * by all bids with the same impression or seat, or by all bids for request-scoped values.
    */
   public void process(SnippetProcessorContext bidCtx) {
     for (SeatBid.Builder seat : bidCtx.response().getSeatbidBuilderList()) {
       for (Bid.Builder bid : seat.getBidBuilderList()) {
-        bidCtx.setBid(bid);
+        bidCtx.setBid(seat, bid);
         processFields(bidCtx);
       }
     }
   }
 
+  /**
+   * Processes the context's response in-place like {@link #process(SnippetProcessorContext)},
+   * but splitting the bids across a pool. Each task processes its bids with a
+   * {@link SnippetProcessorContext#fork()} of the context, so the result is the same as
+   * sequential processing, as long as macro values don't depend on the processing order.
+   */
+  public void process(SnippetProcessorContext bidCtx, ForkJoinPool pool) {
+    List<SeatBid.Builder> seats = new ArrayList<>();
+    List<Bid.Builder> bids = new ArrayList<>();
+    for (SeatBid.Builder seat : bidCtx.response().getSeatbidBuilderList()) {
+      for (Bid.Builder bid : seat.getBidBuilderList()) {
+        seats.add(seat);
+        bids.add(bid);
+      }
+    }
+
+    if (bids.size() <= PARALLEL_BATCH_SIZE) {
+      process(bidCtx);
+    } else {
+      bidCtx.fork();
+      pool.invoke(new BidTask(bidCtx, seats, bids, 0, bids.size()));
+    }
+  }
+
   /**
    * Processes all fields of a bid that should support macro expansion.
    */
@@ -169,12 +272,9 @@ public class OpenRtbSnippetProcessor extends SnippetProcessor {
   }
 
   private SeatBidOrBuilder findSeat(SnippetProcessorContext ctx, SnippetMacroType macro) {
-    for (SeatBidOrBuilder seatBid : ctx.response().getSeatbidOrBuilderList()) {
-      for (BidOrBuilder lookupBid : seatBid.getBidOrBuilderList()) {
-        if (lookupBid == ctx.getBid()) {
-          return seatBid;
-        }
-      }
+    SeatBidOrBuilder seatBid = ctx.findSeat();
+    if (seatBid != null) {
+      return seatBid;
     }
 
     throw new UndefinedMacroException(
@@ -182,13 +282,44 @@ public class OpenRtbSnippetProcessor extends SnippetProcessor {
   }
 
   protected ImpOrBuilder findImp(SnippetProcessorContext ctx, SnippetMacroType macro) {
-    for (ImpOrBuilder imp : ctx.request().getImpOrBuilderList()) {
-      if (imp.getId().equals(ctx.getBid().getImpid())) {
-        return imp;
-      }
+    ImpOrBuilder imp = ctx.findImp(ctx.getBid().getImpid());
+    if (imp != null) {
+      return imp;
     }
 
     throw new UndefinedMacroException(macro,
         "Bid's impression id: " + ctx.getBid().getImpid() + " doesn't match request");
   }
+
+  private final class BidTask extends RecursiveAction {
+    private final SnippetProcessorContext bidCtx;
+    private final List<SeatBid.Builder> seats;
+    private final List<Bid.Builder> bids;
+    private final int from;
+    private final int to;
+
+    BidTask(SnippetProcessorContext bidCtx, List<SeatBid.Builder> seats,
+        List<Bid.Builder> bids, int from, int to) {
+      this.bidCtx = bidCtx;
+      this.seats = seats;
+      this.bids = bids;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override protected void compute() {
+      if (to - from > PARALLEL_BATCH_SIZE) {
+        int mid = (from + to) >>> 1;
+        invokeAll(
+            new BidTask(bidCtx, seats, bids, from, mid),
+            new BidTask(bidCtx, seats, bids, mid, to));
+      } else {
+        SnippetProcessorContext taskCtx = bidCtx.fork();
+        for (int i = from; i < to; ++i) {
+          taskCtx.setBid(seats.get(i), bids.get(i));
+          processFields(taskCtx);
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.snippet;
+
+import com.google.common.escape.Escaper;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * URL encoding for snippets, with the same rules of {@link SnippetProcessor#getEscaper()}:
+ * letters, digits and {@code -_.*} are safe, space is encoded as {@code +}, and any other
+ * character is percent-encoded as UTF-8. Text can be encoded many times in a single pass,
+ * straight into a {@link StringBuilder} or into a {@link ByteBuffer} as UTF-8.
+ *
+ * <p>The encoding of each byte is precomputed for the first {@link #TABLE_LEVELS} levels;
+ * the encoding of a level is the same as the next level's encoding of the
+ * previous level's output, so higher levels are computed by recursion on the tables.
+ */
+final class PercentEncoding {
+  static final int TABLE_LEVELS = 8;
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+  private static final boolean[] SAFE = new boolean[128];
+  // Encodings of each byte value (or ASCII character) by level, as chars and as bytes.
+  private static final char[][][] CHARS = new char[TABLE_LEVELS + 1][256][];
+  private static final byte[][][] BYTES = new byte[TABLE_LEVELS + 1][256][];
+  private static final Escaper ESCAPER = new Escaper() {
+    @Override public String escape(String string) {
+      for (int i = 0; i < string.length(); ++i) {
+        char c = string.charAt(i);
+        if (c >= 0x80 || !SAFE[c]) {
+          StringBuilder sb = new StringBuilder(string.length() + 16);
+          sb.append(string, 0, i);
+          encode(string, i, string.length(), 1, sb);
+          return sb.toString();
+        }
+      }
+      return string;
+    }
+  };
+
+  static {
+    for (char c = 0; c < 128; ++c) {
+      SAFE[c] = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+          || c == '-' || c == '_' || c == '.' || c == '*';
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int level = 0; level <= TABLE_LEVELS; ++level) {
+      for (int b = 0; b < 256; ++b) {
+        sb.setLength(0);
+        encodeAscii((char) b, level, sb);
+        CHARS[level][b] = sb.toString().toCharArray();
+        BYTES[level][b] = new byte[sb.length()];
+        for (int i = 0; i < sb.length(); ++i) {
+          BYTES[level][b][i] = (byte) sb.charAt(i);
+        }
+      }
+    }
+  }
+
+  private PercentEncoding() {
+  }
+
+  /**
+   * Returns an {@link Escaper} with the same output as
+   * {@code new PercentEscaper("-_.*", true)}.
+   */
+  static Escaper escaper() {
+    return ESCAPER;
+  }
+
+  /**
+   * Appends part of a text to a builder, URL-encoded {@code encodeLevel} times.
+   * The text can be a previous part of the same builder.
+   */
+  static void encode(CharSequence text, int start, int end, int encodeLevel, StringBuilder sb) {
+    if (encodeLevel == 0) {
+      sb.append(text, start, end);
+      return;
+    }
+
+    for (int i = start; i < end; ++i) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        if (SAFE[c]) {
+          sb.append(c);
+        } else {
+          appendByte(c, encodeLevel, sb);
+        }
+      } else {
+        int codePoint = codePointAt(text, i, end);
+        if (codePoint > 0xFFFF) {
+          ++i;
+        }
+        if (codePoint < 0x800) {
+          appendByte(0xC0 | (codePoint >> 6), encodeLevel, sb);
+        } else {
+          if (codePoint < 0x10000) {
+            appendByte(0xE0 | (codePoint >> 12), encodeLevel, sb);
+          } else {
+            appendByte(0xF0 | (codePoint >> 18), encodeLevel, sb);
+            appendByte(0x80 | ((codePoint >> 12) & 0x3F), encodeLevel, sb);
+          }
+          appendByte(0x80 | ((codePoint >> 6) & 0x3F), encodeLevel, sb);
+        }
+        appendByte(0x80 | (codePoint & 0x3F), encodeLevel, sb);
+      }
+    }
+  }
+
+  /**
+   * Decodes the builder's content from some position in place, reversing
+   * {@link #encode(CharSequence, int, int, int, StringBuilder)} with the same level.
+   * This is only used to recover from unbalanced encoding markers, so it's not optimized.
+   */
+  static void decode(StringBuilder sb, int start, int encodeLevel) {
+    for (int level = 0; level < encodeLevel; ++level) {
+      // Encoded text is all ASCII, so each char is a byte of the UTF-8 input.
+      byte[] bytes = new byte[sb.length() - start];
+      int size = 0;
+      for (int i = start; i < sb.length(); ++i) {
+        char c = sb.charAt(i);
+        if (c == '+') {
+          bytes[size++] = ' ';
+        } else if (c == '%') {
+          bytes[size++] = (byte) ((Character.digit(sb.charAt(i + 1), 16) << 4)
+              | Character.digit(sb.charAt(i + 2), 16));
+          i += 2;
+        } else {
+          bytes[size++] = (byte) c;
+        }
+      }
+      sb.setLength(start);
+      sb.append(new String(bytes, 0, size, StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Writes part of a text to a buffer as UTF-8, URL-encoded {@code encodeLevel} times.
+   *
+   * @throws java.nio.BufferOverflowException if the buffer doesn't have enough space
+   */
+  static void encode(CharSequence text, int start, int end, int encodeLevel, ByteBuffer out) {
+    for (int i = start; i < end; ++i) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        if (encodeLevel == 0 || SAFE[c]) {
+          out.put((byte) c);
+        } else {
+          putByte(c, encodeLevel, out);
+        }
+        continue;
+      }
+
+      int codePoint = codePointAt(text, i, end);
+      if (codePoint > 0xFFFF) {
+        ++i;
+      }
+      if (codePoint < 0x800) {
+        putByte(0xC0 | (codePoint >> 6), encodeLevel, out);
+      } else {
+        if (codePoint < 0x10000) {
+          putByte(0xE0 | (codePoint >> 12), encodeLevel, out);
+        } else {
+          putByte(0xF0 | (codePoint >> 18), encodeLevel, out);
+          putByte(0x80 | ((codePoint >> 12) & 0x3F), encodeLevel, out);
+        }
+        putByte(0x80 | ((codePoint >> 6) & 0x3F), encodeLevel, out);
+      }
+      putByte(0x80 | (codePoint & 0x3F), encodeLevel, out);
+    }
+  }
+
+  private static int codePointAt(CharSequence text, int index, int end) {
+    char c = text.charAt(index);
+    if (Character.isHighSurrogate(c) && index + 1 < end
+        && Character.isLowSurrogate(text.charAt(index + 1))) {
+      return Character.toCodePoint(c, text.charAt(index + 1));
+    } else if (Character.isSurrogate(c)) {
+      throw new IllegalArgumentException("Unpaired surrogate at index " + index);
+    }
+    return c;
+  }
+
+  /**
+   * Appends the encoding of a byte, or of an ASCII character.
+   */
+  private static void appendByte(int b, int encodeLevel, StringBuilder sb) {
+    if (encodeLevel <= TABLE_LEVELS) {
+      sb.append(CHARS[encodeLevel][b]);
+    } else {
+      for (char c : CHARS[TABLE_LEVELS][b]) {
+        appendByte(c, encodeLevel - TABLE_LEVELS, sb);
+      }
+    }
+  }
+
+  private static void putByte(int b, int encodeLevel, ByteBuffer out) {
+    if (encodeLevel <= TABLE_LEVELS) {
+      out.put(BYTES[encodeLevel][b]);
+    } else {
+      for (byte c : BYTES[TABLE_LEVELS][b]) {
+        putByte(c, encodeLevel - TABLE_LEVELS, out);
+      }
+    }
+  }
+
+  // Builds the tables.
+  private static void encodeAscii(char c, int encodeLevel, StringBuilder sb) {
+    if (encodeLevel == 0 || (c < 0x80 && SAFE[c])) {
+      // Safe characters stay the same in any level.
+      sb.append(c);
+    } else if (c == ' ') {
+      encodeAscii('+', encodeLevel - 1, sb);
+    } else {
+      encodeAscii('%', encodeLevel - 1, sb);
+      encodeAscii(HEX_DIGITS[(c >> 4) & 0xF], encodeLevel - 1, sb);
+      encodeAscii(HEX_DIGITS[c & 0xF], encodeLevel - 1, sb);
+    }
+  }
+}
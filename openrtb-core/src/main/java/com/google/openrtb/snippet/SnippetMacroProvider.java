@@ -0,0 +1,69 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.snippet;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.function.Function;
+
+/**
+ * Macro that computes its own value, without a {@link SnippetProcessor#processMacroAt}
+ * implementation. The value is computed on first use and memoized for the macro's
+ * {@link #scope()}, so an expensive macro costs once per scope, not once per occurrence.
+ * Providers are registered like any other macro, in {@link SnippetProcessor#registerMacros()}.
+ */
+public interface SnippetMacroProvider extends SnippetMacroType {
+
+  /**
+   * Returns the scope of the macro's value.
+   */
+  SnippetMacroScope scope();
+
+  /**
+   * Computes the macro's value for the context's current request, impression, seat or bid,
+   * depending on the scope. The value may contain other macros, but implementations must not
+   * use the context's builder.
+   */
+  String value(SnippetProcessorContext ctx);
+
+  /**
+   * Creates a provider from a function that computes the value.
+   */
+  static SnippetMacroProvider of(String key, SnippetMacroScope scope,
+      Function<SnippetProcessorContext, String> value) {
+    checkNotNull(key);
+    checkNotNull(scope);
+    checkNotNull(value);
+    return new SnippetMacroProvider() {
+      @Override public String key() {
+        return key;
+      }
+
+      @Override public SnippetMacroScope scope() {
+        return scope;
+      }
+
+      @Override public String value(SnippetProcessorContext ctx) {
+        return value.apply(ctx);
+      }
+
+      @Override public String toString() {
+        return key;
+      }
+    };
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.snippet;
+
+import javax.annotation.Nullable;
+
+/**
+ * Scope of a macro's value: the part of the request or response that the value depends on.
+ * Values are memoized by the {@link SnippetProcessorContext} for their scope. Values that
+ * contain other macros are memoized for the narrowest scope of all macros they contain.
+ */
+public enum SnippetMacroScope {
+  /**
+   * Same value for all bids of the response.
+   */
+  REQUEST,
+  /**
+   * Value depends on the impression of the current bid.
+   */
+  IMP,
+  /**
+   * Value depends on the seat of the current bid.
+   */
+  SEAT,
+  /**
+   * Value depends on the current bid.
+   */
+  BID;
+
+  /**
+   * Returns the scope of a value that depends on values of two scopes. {@code null}, for
+   * values that can't be memoized, is narrower than any scope.
+   */
+  @Nullable static SnippetMacroScope narrower(
+      @Nullable SnippetMacroScope scope1, @Nullable SnippetMacroScope scope2) {
+    if (scope1 == null || scope2 == null) {
+      return null;
+    } else if (scope1 == scope2 || scope2 == REQUEST) {
+      return scope1;
+    } else if (scope1 == REQUEST) {
+      return scope2;
+    } else {
+      // IMP and SEAT are independent, so a value that depends on both is per-bid.
+      return BID;
+    }
+  }
+}
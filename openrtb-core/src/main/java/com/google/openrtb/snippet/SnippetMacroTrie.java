@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.snippet;
+
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Trie of macro keys, so matching a macro costs at most the length of the longest key,
+ * independent of the number of macros.
+ *
+ * <p>If several keys match at some position, the trie returns the first one in the order
+ * the macros were added. When they are added in lexicographic order of their keys, that's
+ * the shortest key: all matching keys are prefixes of each other.
+ */
+final class SnippetMacroTrie {
+  private final Node root = new Node();
+
+  SnippetMacroTrie(List<SnippetMacroType> macros) {
+    for (SnippetMacroType macro : macros) {
+      String key = macro.key();
+      Node node = root;
+      for (int i = 0; i < key.length(); ++i) {
+        node = node.getOrAdd(key.charAt(i));
+      }
+      if (node.macro == null) {
+        node.macro = macro;
+      }
+    }
+  }
+
+  /**
+   * Returns the macro whose key starts at some position of the text, or {@code null} if none.
+   */
+  @Nullable SnippetMacroType match(CharSequence text, int pos) {
+    Node node = root;
+    for (int i = pos; node.macro == null; ++i) {
+      if (i == text.length() || (node = node.get(text.charAt(i))) == null) {
+        return null;
+      }
+    }
+    return node.macro;
+  }
+
+  private static final class Node {
+    SnippetMacroType macro;
+    char[] labels = new char[0];
+    Node[] children = new Node[0];
+
+    @Nullable Node get(char c) {
+      int index = Arrays.binarySearch(labels, c);
+      return index < 0 ? null : children[index];
+    }
+
+    Node getOrAdd(char c) {
+      int index = Arrays.binarySearch(labels, c);
+      if (index >= 0) {
+        return children[index];
+      }
+      index = -index - 1;
+      Node child = new Node();
+      char[] newLabels = new char[labels.length + 1];
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(labels, 0, newLabels, 0, index);
+      System.arraycopy(children, 0, newChildren, 0, index);
+      newLabels[index] = c;
+      newChildren[index] = child;
+      System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+      System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+      labels = newLabels;
+      children = newChildren;
+      return child;
+    }
+  }
+}
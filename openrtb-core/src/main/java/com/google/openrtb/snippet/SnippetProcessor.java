@@ -20,13 +20,19 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.MoreObjects.ToStringHelper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.escape.Escaper;
-import com.google.common.net.PercentEscaper;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,11 +43,24 @@ import org.slf4j.LoggerFactory;
  * %{A%{B}%}% will encode A and doubly-encode B. This nesting is typically necessary when URLs
  * have parameter that contain other URLs, so each server decodes and redirects to the next URL.
  *
+ * <p>Snippets that are processed many times, like the markup of a library of creatives, can be
+ * compiled once into a {@link SnippetTemplate}; see {@link #template(String)}.
+ *
  * <p>This class is threadsafe, and all concrete subclasses have to be too.
  */
 public abstract class SnippetProcessor {
   private static final Logger logger = LoggerFactory.getLogger(SnippetProcessor.class);
-  private static final Escaper ESCAPER = new PercentEscaper("-_.*", true);
+
+  /**
+   * Default maximum number of templates cached by {@link #template(String)}.
+   */
+  public static final int DEFAULT_TEMPLATE_CACHE_SIZE = 4096;
+
+  /**
+   * Maximum depth of macros whose values contain other macros. Deeper macros, and macros
+   * that would expand to themselves (directly or not), are left unexpanded.
+   */
+  public static final int MAX_RECURSION_DEPTH = 16;
 
   public static final SnippetProcessor NULL = new SnippetProcessor() {
     @Override public String process(SnippetProcessorContext ctx, String snippet) {
@@ -49,13 +68,41 @@ public abstract class SnippetProcessor {
       return checkNotNull(snippet);
     }
 
+    @Override public String process(SnippetProcessorContext ctx, SnippetTemplate template) {
+      checkNotNull(ctx);
+      return template.snippet();
+    }
+
+    @Override public void process(SnippetProcessorContext ctx, String snippet, Appendable out)
+        throws IOException {
+      out.append(process(ctx, snippet));
+    }
+
+    @Override public void process(SnippetProcessorContext ctx, String snippet, ByteBuffer out) {
+      String processed = process(ctx, snippet);
+      PercentEncoding.encode(processed, 0, processed.length(), 0, out);
+    }
+
+    @Override public void process(
+        SnippetProcessorContext ctx, SnippetTemplate template, Appendable out)
+        throws IOException {
+      out.append(process(ctx, template));
+    }
+
+    @Override public void process(
+        SnippetProcessorContext ctx, SnippetTemplate template, ByteBuffer out) {
+      String processed = process(ctx, template);
+      PercentEncoding.encode(processed, 0, processed.length(), 0, out);
+    }
+
     @Override protected boolean processMacroAt(
         SnippetProcessorContext ctx, SnippetMacroType macroDef) {
       return false;
     }
   };
 
-  private final ImmutableList<SnippetMacroType> scanMacros;
+  private final SnippetMacroTrie scanMacros;
+  private final Cache<Object, SnippetTemplate> templates;
 
   public SnippetProcessor() {
     List<SnippetMacroType> registered = registerMacros();
@@ -64,95 +111,469 @@ public abstract class SnippetProcessor {
       @Override public int compare(SnippetMacroType o1, SnippetMacroType o2) {
         return o1.key().compareTo(o2.key());
       }});
-    this.scanMacros = ImmutableList.copyOf(macros);
+    // The sort order is the tie-break for keys that are prefixes of other keys.
+    this.scanMacros = new SnippetMacroTrie(Arrays.asList(macros));
+    this.templates = CacheBuilder.newBuilder().maximumSize(templateCacheSize()).build();
   }
 
   protected List<SnippetMacroType> registerMacros() {
     return ImmutableList.of();
   }
 
+  /**
+   * Returns the maximum number of templates kept in the cache; least recently used templates
+   * are evicted first.
+   */
+  protected int templateCacheSize() {
+    return DEFAULT_TEMPLATE_CACHE_SIZE;
+  }
+
+  /**
+   * Returns the escaper for URL encoding of snippets. Same output as Guava's
+   * {@code new PercentEscaper("-_.*", true)}, but table-driven.
+   */
   public static Escaper getEscaper() {
-    return ESCAPER;
+    return PercentEncoding.escaper();
   }
 
   /**
    * Processes the raw snippet that was set by the bid, making any transformations necessary.
+   * Macros are expanded and URL-encoded in a single pass, straight into the context's builder.
    */
   public String process(SnippetProcessorContext ctx, String snippet) {
     checkNotNull(ctx);
+    if (snippet.indexOf("${") == -1 && snippet.indexOf("%{") == -1) {
+      return snippet;
+    }
+
     StringBuilder sb = ctx.builder();
     sb.setLength(0);
-    String currSnippet = snippet;
+    String ret = processInto(ctx, snippet, true) ? sb.toString() : snippet;
+    sb.setLength(0);
+    return ret;
+  }
 
-    boolean processedMacros = false;
-    int snippetPos = 0;
-    int macroPos = currSnippet.indexOf("${");
+  /**
+   * Processes the raw snippet, appending the result to some output like a {@link Writer} or
+   * a {@link StringBuilder} (but not the context's own builder).
+   *
+   * @see #process(SnippetProcessorContext, String)
+   */
+  public void process(SnippetProcessorContext ctx, String snippet, Appendable out)
+      throws IOException {
+    checkNotNull(ctx);
+    if (snippet.indexOf("${") == -1 && snippet.indexOf("%{") == -1) {
+      out.append(snippet);
+      return;
+    }
+
+    StringBuilder sb = ctx.builder();
+    sb.setLength(0);
+    processInto(ctx, snippet, true);
+    copy(ctx, out);
+    sb.setLength(0);
+  }
+
+  /**
+   * Processes the raw snippet, writing the result to a buffer as UTF-8.
+   *
+   * @throws java.nio.BufferOverflowException if the buffer doesn't have enough space
+   * @see #process(SnippetProcessorContext, String)
+   */
+  public void process(SnippetProcessorContext ctx, String snippet, ByteBuffer out) {
+    checkNotNull(ctx);
+    if (snippet.indexOf("${") == -1 && snippet.indexOf("%{") == -1) {
+      PercentEncoding.encode(snippet, 0, snippet.length(), 0, out);
+      return;
+    }
+
+    StringBuilder sb = ctx.builder();
+    sb.setLength(0);
+    processInto(ctx, snippet, true);
+    PercentEncoding.encode(sb, 0, sb.length(), 0, out);
+    sb.setLength(0);
+  }
 
-    while (macroPos != -1) {
-      sb.append(currSnippet.substring(snippetPos, macroPos));
-      int macroEnd = processMacroAt(ctx, currSnippet, macroPos);
+  /**
+   * Appends the processed snippet to the context's builder.
+   *
+   * @param markers {@code true} to handle {@code %{...}%} markers, {@code false} to only
+   *     expand macros (for values of recursive macros)
+   * @return {@code true} if any macro or encoding marker was found
+   */
+  private boolean processInto(
+      SnippetProcessorContext ctx, CharSequence snippet, boolean markers) {
+    StringBuilder sb = ctx.builder();
+    boolean processed = false;
+    int encodeLevel = 0;
+    int encodeOutput = sb.length(); // Output length after the last encoding marker
+    int literalStart = 0;
+    int lastPos = snippet.length() - 1;
+    int snippetPos = 0;
 
-      if (macroEnd == -1) {
-        sb.append("${");
-        snippetPos = macroPos + 2;
+    while (snippetPos <= lastPos) {
+      char c = snippet.charAt(snippetPos);
+      SnippetMacroType macroDef = c == '$' ? match(snippet, snippetPos) : null;
+
+      if (macroDef != null) {
+        appendEncoded(snippet, literalStart, snippetPos, encodeLevel, sb);
+        appendMacro(ctx, macroDef, encodeLevel);
+        literalStart = (snippetPos += macroDef.key().length());
+        processed = true;
+      } else if (markers
+          && c == '%' && snippetPos < lastPos && snippet.charAt(snippetPos + 1) == '{') {
+        appendEncoded(snippet, literalStart, snippetPos, encodeLevel++, sb);
+        literalStart = (snippetPos += 2);
+        encodeOutput = sb.length();
+        processed = true;
+      } else if (markers
+          && c == '}' && snippetPos < lastPos && snippet.charAt(snippetPos + 1) == '%'
+          && encodeLevel > 0) {
+        appendEncoded(snippet, literalStart, snippetPos, encodeLevel--, sb);
+        literalStart = (snippetPos += 2);
+        encodeOutput = sb.length();
       } else {
-        snippetPos = macroEnd;
-        processedMacros = true;
+        ++snippetPos;
       }
-
-      macroPos = currSnippet.indexOf("${", snippetPos);
     }
+    appendEncoded(snippet, literalStart, snippet.length(), encodeLevel, sb);
 
-    if (processedMacros) {
-      sb.append(currSnippet, snippetPos, currSnippet.length());
-      currSnippet = sb.toString();
+    if (encodeLevel != 0) {
+      logger.warn("Unbalanced '%{': level={}, pos={}", encodeLevel, snippetPos);
+      // Anything after the last marker is not encoded. Decoding that output is exact,
+      // and unlike processing that part again it won't expand its macros twice.
+      PercentEncoding.decode(sb, encodeOutput, encodeLevel);
     }
-    sb.setLength(0);
 
-    String ret = urlEncode(ctx, currSnippet);
-    sb.setLength(0);
-    return ret;
+    return processed;
   }
 
-  private int processMacroAt(SnippetProcessorContext ctx,
-      String snippet, int macroStart) {
-    SnippetMacroType macroDef = match(snippet, macroStart);
-    if (macroDef == null) {
-      return -1;
+  /**
+   * Encodes the builder's content from some position, by appending its encoding and then
+   * removing the raw content.
+   */
+  private static void encodeInPlace(StringBuilder sb, int start, int encodeLevel) {
+    int end = sb.length();
+    if (encodeLevel != 0 && end != start) {
+      appendEncoded(sb, start, end, encodeLevel, sb);
+      sb.delete(start, end);
     }
+  }
 
-    processMacroAt(ctx, macroDef);
+  /**
+   * Appends the value of a macro to the context's builder, encoded {@code encodeLevel} times.
+   * Values of macros with a {@link #macroScope(SnippetMacroType)} are memoized in the context,
+   * for the narrowest scope of that macro and all macros expanded in its value.
+   */
+  private void appendMacro(
+      SnippetProcessorContext ctx, SnippetMacroType macroDef, int encodeLevel) {
+    SnippetMacroScope scope = macroScope(macroDef);
+    if (scope == null) {
+      ctx.useValue(null);
+      appendMacroValue(ctx, macroDef, encodeLevel);
+      return;
+    }
 
-    // Handle recursive macros
     StringBuilder sb = ctx.builder();
-    int macroPos = sb.indexOf("${");
-    if (macroPos != -1) {
-      String recSnippet = sb.substring(macroPos);
-      // Avoid infinite recursion if the macro expands to itself!
-      if (!macroDef.key().equals(recSnippet)) {
-        String recReplaced = process(ctx.rec(), recSnippet);
-        if (recReplaced != recSnippet) {
-          sb.setLength(macroPos);
-          sb.append(recReplaced);
+    int memoLevel = Math.min(encodeLevel, SnippetProcessorContext.MAX_MEMO_LEVEL);
+    String value = ctx.getMacroValue(macroDef, memoLevel);
+    if (value == null) {
+      int valueStart = sb.length();
+      String raw = ctx.getMacroValue(macroDef, 0);
+      if (raw == null) {
+        SnippetMacroScope outer = ctx.startValue(scope);
+        appendMacroValue(ctx, macroDef, 0);
+        raw = sb.substring(valueStart);
+        scope = ctx.endValue(outer);
+        if (scope != null) {
+          ctx.putMacroValue(scope, macroDef, 0, raw);
+        }
+      } else {
+        scope = ctx.memoScope(macroDef);
+        ctx.useValue(scope);
+      }
+      if (memoLevel == 0) {
+        value = raw;
+      } else {
+        sb.setLength(valueStart);
+        appendEncoded(raw, 0, raw.length(), memoLevel, sb);
+        value = sb.substring(valueStart);
+        if (scope != null) {
+          ctx.putMacroValue(scope, macroDef, memoLevel, value);
         }
       }
+      sb.setLength(valueStart);
+    } else if (ctx.depth() != 0) {
+      // Only needed in the value of another macro.
+      ctx.useValue(ctx.memoScope(macroDef));
     }
-
-    return macroStart + macroDef.key().length();
+    // Encoding n times is the same as encoding the (n - 1)-encoded value once.
+    appendEncoded(value, 0, value.length(), encodeLevel - memoLevel, sb);
   }
 
-  private SnippetMacroType match(String snippet, int macroStart) {
-    for (SnippetMacroType macroDef : scanMacros) {
-      if (macroDef.key().regionMatches(0, snippet, macroStart, macroDef.key().length())) {
-        return macroDef;
+  private void appendMacroValue(
+      SnippetProcessorContext ctx, SnippetMacroType macroDef, int encodeLevel) {
+    StringBuilder sb = ctx.builder();
+    int valueStart = sb.length();
+
+    if (ctx.isExpanding(macroDef)) {
+      // Avoid infinite recursion if the macro expands to itself, directly or not!
+      // Only the indirect case depends on the path that reached the macro.
+      if (!ctx.isExpandingLast(macroDef)) {
+        ctx.unexpanded();
+      }
+      sb.append(macroDef.key());
+    } else if (ctx.depth() == MAX_RECURSION_DEPTH) {
+      logger.warn("Recursive macros too deep: {}", macroDef.key());
+      ctx.unexpanded();
+      sb.append(macroDef.key());
+    } else {
+      StringBuilder recSnippet = ctx.enter(macroDef);
+      try {
+        if (macroDef instanceof SnippetMacroProvider) {
+          sb.append(((SnippetMacroProvider) macroDef).value(ctx));
+        } else {
+          processMacroAt(ctx, macroDef);
+        }
+
+        // Handle recursive macros: move the rest of the value to this depth's
+        // scratch builder, then process it back into the builder. Like plain values,
+        // these are not scanned for encoding markers.
+        int macroPos = sb.indexOf("${", valueStart);
+        if (macroPos != -1) {
+          recSnippet.append(sb, macroPos, sb.length());
+          sb.setLength(macroPos);
+          processInto(ctx, recSnippet, false);
+        }
+      } finally {
+        ctx.exit();
       }
     }
-    return null;
+
+    encodeInPlace(sb, valueStart, encodeLevel);
+  }
+
+  private SnippetMacroType match(CharSequence snippet, int macroStart) {
+    return scanMacros.match(snippet, macroStart);
   }
 
   protected abstract boolean processMacroAt(
       SnippetProcessorContext ctx, SnippetMacroType macroDef);
 
+  /**
+   * Returns the scope of a macro's value, so it's memoized by the context and only resolved
+   * once for that scope; or {@code null} if the value can't be memoized. The default
+   * implementation returns the scope of {@link SnippetMacroProvider}s, and {@code null}
+   * for other macros.
+   */
+  @Nullable protected SnippetMacroScope macroScope(SnippetMacroType macroDef) {
+    return macroDef instanceof SnippetMacroProvider
+        ? ((SnippetMacroProvider) macroDef).scope()
+        : null;
+  }
+
+  /**
+   * Returns the compiled template for a snippet, from a cache keyed by the snippet itself.
+   */
+  public final SnippetTemplate template(String snippet) {
+    return template(snippet, snippet);
+  }
+
+  /**
+   * Returns the compiled template for a snippet, from a cache keyed by some identifier of
+   * the snippet, like a creative id. The key must not be used for any other snippet,
+   * including the contents of other snippets if the key is a {@code String}.
+   */
+  public final SnippetTemplate template(Object key, String snippet) {
+    SnippetTemplate template = templates.getIfPresent(key);
+    if (template == null) {
+      template = compile(snippet);
+      templates.put(key, template);
+    }
+    return template;
+  }
+
+  /**
+   * Compiles a snippet into a {@link SnippetTemplate}. Rendering the template with
+   * {@link #process(SnippetProcessorContext, SnippetTemplate)} has the same result as
+   * {@link #process(SnippetProcessorContext, String)}: macro values are never scanned for
+   * {@code %{...}%} markers, each value is only encoded with the level of the markers
+   * around the macro in the snippet.
+   */
+  public SnippetTemplate compile(String snippet) {
+    List<String> texts = new ArrayList<>();
+    List<SnippetMacroType> macros = new ArrayList<>();
+    List<Integer> levels = new ArrayList<>();
+    StringBuilder text = new StringBuilder();
+    int encodeLevel = 0;
+    int encodeStart = 0; // First segment after the last encoding marker
+    int lastPos = snippet.length() - 1;
+    int snippetPos = 0;
+
+    while (snippetPos <= lastPos) {
+      char c = snippet.charAt(snippetPos);
+      SnippetMacroType macroDef = c == '$' ? match(snippet, snippetPos) : null;
+
+      if (macroDef != null) {
+        addSegment(texts, macros, levels, text, encodeLevel);
+        texts.add(null);
+        macros.add(macroDef);
+        levels.add(encodeLevel);
+        snippetPos += macroDef.key().length();
+      } else if (c == '%' && snippetPos < lastPos && snippet.charAt(snippetPos + 1) == '{') {
+        addSegment(texts, macros, levels, text, encodeLevel++);
+        encodeStart = texts.size();
+        snippetPos += 2;
+      } else if (c == '}' && snippetPos < lastPos && snippet.charAt(snippetPos + 1) == '%'
+          && encodeLevel > 0) {
+        addSegment(texts, macros, levels, text, encodeLevel--);
+        encodeStart = texts.size();
+        snippetPos += 2;
+      } else {
+        text.append(c);
+        ++snippetPos;
+      }
+    }
+    addSegment(texts, macros, levels, text, encodeLevel);
+
+    if (encodeLevel != 0) {
+      logger.warn("Unbalanced '%{': level={}, pos={}", encodeLevel, snippetPos);
+      // Same as urlEncode(): anything after the last marker is not encoded.
+      for (int i = encodeStart; i < levels.size(); ++i) {
+        levels.set(i, 0);
+      }
+    }
+
+    // Encode the literals, merging any consecutive ones.
+    List<String> segTexts = new ArrayList<>();
+    List<SnippetMacroType> segMacros = new ArrayList<>();
+    List<Integer> segLevels = new ArrayList<>();
+    for (int i = 0; i < texts.size(); ++i) {
+      if (macros.get(i) == null) {
+        text.setLength(0);
+        appendEncoded(texts.get(i), 0, texts.get(i).length(), levels.get(i), text);
+        String encoded = text.toString();
+        int last = segTexts.size() - 1;
+        if (last != -1 && segMacros.get(last) == null) {
+          segTexts.set(last, segTexts.get(last) + encoded);
+          continue;
+        }
+        segTexts.add(encoded);
+      } else {
+        segTexts.add(null);
+      }
+      segMacros.add(macros.get(i));
+      segLevels.add(levels.get(i));
+    }
+
+    int[] segLevelArray = new int[segLevels.size()];
+    for (int i = 0; i < segLevelArray.length; ++i) {
+      segLevelArray[i] = segLevels.get(i);
+    }
+    return new SnippetTemplate(snippet,
+        segTexts.toArray(new String[segTexts.size()]),
+        segMacros.toArray(new SnippetMacroType[segMacros.size()]),
+        segLevelArray);
+  }
+
+  private static void addSegment(List<String> texts, List<SnippetMacroType> macros,
+      List<Integer> levels, StringBuilder text, int encodeLevel) {
+    if (text.length() != 0) {
+      texts.add(text.toString());
+      macros.add(null);
+      levels.add(encodeLevel);
+      text.setLength(0);
+    }
+  }
+
+  /**
+   * Renders a compiled snippet, in a single pass over its segments.
+   *
+   * @see #compile(String)
+   */
+  public String process(SnippetProcessorContext ctx, SnippetTemplate template) {
+    checkNotNull(ctx);
+    if (template.isConstant()) {
+      return template.size() == 0 ? "" : template.text(0);
+    }
+
+    StringBuilder sb = ctx.builder();
+    sb.setLength(0);
+    for (int i = 0; i < template.size(); ++i) {
+      SnippetMacroType macroDef = template.macro(i);
+      if (macroDef == null) {
+        sb.append(template.text(i));
+      } else {
+        appendMacro(ctx, macroDef, template.level(i));
+      }
+    }
+    String ret = sb.toString();
+    sb.setLength(0);
+    return ret;
+  }
+
+  /**
+   * Renders a compiled snippet, appending the result to some output like a {@link Writer}
+   * or a {@link StringBuilder} (but not the context's own builder). Literal segments are
+   * appended directly, only macro values go through the context's builder.
+   *
+   * @see #compile(String)
+   */
+  public void process(SnippetProcessorContext ctx, SnippetTemplate template, Appendable out)
+      throws IOException {
+    checkNotNull(ctx);
+    StringBuilder sb = ctx.builder();
+    for (int i = 0; i < template.size(); ++i) {
+      SnippetMacroType macroDef = template.macro(i);
+      if (macroDef == null) {
+        out.append(template.text(i));
+      } else {
+        sb.setLength(0);
+        appendMacro(ctx, macroDef, template.level(i));
+        copy(ctx, out);
+      }
+    }
+    sb.setLength(0);
+  }
+
+  /**
+   * Renders a compiled snippet, writing the result to a buffer as UTF-8. Literal segments are
+   * stored as UTF-8 in the template, and macro values are URL-encoded straight into the buffer.
+   *
+   * @throws java.nio.BufferOverflowException if the buffer doesn't have enough space
+   * @see #compile(String)
+   */
+  public void process(SnippetProcessorContext ctx, SnippetTemplate template, ByteBuffer out) {
+    checkNotNull(ctx);
+    StringBuilder sb = ctx.builder();
+    for (int i = 0; i < template.size(); ++i) {
+      SnippetMacroType macroDef = template.macro(i);
+      if (macroDef == null) {
+        out.put(template.utf8(i));
+      } else {
+        sb.setLength(0);
+        appendMacro(ctx, macroDef, 0);
+        PercentEncoding.encode(sb, 0, sb.length(), template.level(i), out);
+      }
+    }
+    sb.setLength(0);
+  }
+
+  private static void copy(SnippetProcessorContext ctx, Appendable out) throws IOException {
+    StringBuilder sb = ctx.builder();
+    if (out instanceof Writer) {
+      // Writer.append(CharSequence) would make a String copy of the builder.
+      char[] chars = ctx.chars();
+      for (int pos = 0; pos < sb.length(); pos += chars.length) {
+        int len = Math.min(chars.length, sb.length() - pos);
+        sb.getChars(pos, pos + len, chars, 0);
+        ((Writer) out).write(chars, 0, len);
+      }
+    } else {
+      out.append(sb);
+    }
+  }
+
   protected static String urlEncode(SnippetProcessorContext ctx, String snippet) {
     int snippetPos = snippet.indexOf("%{");
     if (snippetPos == -1) {
@@ -168,11 +589,11 @@ public abstract class SnippetProcessor {
       char c = snippet.charAt(snippetPos);
 
       if (c == '%' && snippetPos < lastPos && snippet.charAt(snippetPos + 1) == '{') {
-        sb.append(flushEncoding(snippet, encodeStart, snippetPos, encodeLevel++));
+        appendEncoded(snippet, encodeStart, snippetPos, encodeLevel++, sb);
         encodeStart = (snippetPos += 2);
       } else if (c == '}' && snippetPos < lastPos && snippet.charAt(snippetPos + 1) == '%'
           && encodeLevel > 0) {
-        sb.append(flushEncoding(snippet, encodeStart, snippetPos, encodeLevel--));
+        appendEncoded(snippet, encodeStart, snippetPos, encodeLevel--, sb);
         encodeStart = (snippetPos += 2);
       } else {
         ++snippetPos;
@@ -183,18 +604,17 @@ public abstract class SnippetProcessor {
       logger.warn("Unbalanced '%{': level={}, pos={}", encodeLevel, snippetPos);
     }
 
-    return sb.append(flushEncoding(snippet, encodeStart, snippet.length(), 0)).toString();
+    return sb.append(snippet, encodeStart, snippet.length()).toString();
   }
 
-  private static String flushEncoding(
-      String snippet, int encodeStart, int encodeEnd, int encodeLevel) {
-    String substr = snippet.substring(encodeStart, encodeEnd);
-
-    for (int i = 0; i < encodeLevel; ++i) {
-      substr = getEscaper().escape(substr);
-    }
-
-    return substr;
+  /**
+   * Appends part of a text to a builder, URL-encoded {@code encodeLevel} times with the same
+   * rules of {@link #getEscaper()}. The encoding is done straight into the builder, without
+   * intermediate strings for each level. The text can be a previous part of the same builder.
+   */
+  protected static void appendEncoded(
+      CharSequence text, int start, int end, int encodeLevel, StringBuilder sb) {
+    PercentEncoding.encode(text, start, end, encodeLevel, sb);
   }
 
   @Override public final String toString() {
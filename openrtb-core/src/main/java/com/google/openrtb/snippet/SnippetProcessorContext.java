@@ -16,22 +16,76 @@
 
 package com.google.openrtb.snippet;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.base.MoreObjects;
+import com.google.openrtb.OpenRtb.BidRequest.ImpOrBuilder;
 import com.google.openrtb.OpenRtb.BidRequestOrBuilder;
 import com.google.openrtb.OpenRtb.BidResponse;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.BidOrBuilder;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBidOrBuilder;
 import com.google.openrtb.util.ProtoUtils;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
 
 /**
  * Context for {@link SnippetProcessor}.
  *
- * <p>This class is NOT threadsafe.
+ * <p>The context has indexes for the request's impressions by id, and for the seat of each of
+ * the response's bids. These are only built on first use, and rebuilt when some lookup fails
+ * in case the request or response were modified; but at most once for each bid, so lookups
+ * that keep failing (like a bid with an unknown impid) don't rebuild them again.
+ *
+ * <p>The context also memoizes the values of macros, with their URL-encoded forms up to
+ * {@link #MAX_MEMO_LEVEL}, so macros used many times (like in multiple-encoded click-tracking
+ * chains) are only resolved and encoded once. Values of {@link SnippetMacroScope#REQUEST}
+ * scope are kept for the lifetime of the context; values of {@link SnippetMacroScope#IMP} and
+ * {@link SnippetMacroScope#SEAT} scopes are kept by impression id and by seat, and shared by
+ * all bids for the same impression or seat; values of {@link SnippetMacroScope#BID} scope are
+ * discarded when the current bid is set.
+ *
+ * <p>This class is NOT threadsafe, but a context can be {@link #fork()}ed to process
+ * different bids of the same response concurrently.
  */
 public class SnippetProcessorContext {
+  /**
+   * Maximum encoding level of memoized macro values.
+   */
+  public static final int MAX_MEMO_LEVEL = 3;
+
+  private static final SnippetMacroScope[] LOOKUP_ORDER = {
+      SnippetMacroScope.BID, SnippetMacroScope.SEAT,
+      SnippetMacroScope.IMP, SnippetMacroScope.REQUEST };
+
   private final BidRequestOrBuilder request;
   private final BidResponse.Builder response;
   private final StringBuilder builder;
   private Bid.Builder bid;
+  private SeatBidOrBuilder seat;
+  private char[] chars;
+  private SnippetMacroType[] expanding = new SnippetMacroType[0];
+  private StringBuilder[] scratch = new StringBuilder[0];
+  private int depth;
+  // Narrowest scope of the macros expanded for the value being computed, or null if
+  // that value can't be memoized.
+  @Nullable private SnippetMacroScope valueScope = SnippetMacroScope.REQUEST;
+  private Map<SnippetMacroType, String[]> requestValues;
+  private Map<String, Map<SnippetMacroType, String[]>> impValues;
+  private Map<SeatBidOrBuilder, Map<SnippetMacroType, String[]>> seatValues;
+  private Map<SnippetMacroType, String[]> bidValues;
+  private boolean concurrent;
+  private Map<String, ImpOrBuilder> imps;
+  private Map<BidOrBuilder, SeatBidOrBuilder> seats;
+  // Indexes were rebuilt since the current bid was set.
+  private boolean impsFresh;
+  private boolean seatsFresh;
 
   public SnippetProcessorContext(BidRequestOrBuilder request, BidResponse.Builder response) {
     this(request, response, new StringBuilder(0));
@@ -52,20 +106,320 @@ public class SnippetProcessorContext {
     return response;
   }
 
+  /**
+   * Sets the current bid, discarding macro values memoized for the previous bid.
+   */
   public final void setBid(Bid.Builder bid) {
+    setBid(null, bid);
+  }
+
+  /**
+   * Sets the current bid, and the seat that contains it.
+   */
+  public final void setBid(SeatBidOrBuilder seat, Bid.Builder bid) {
     this.bid = bid;
+    this.seat = seat;
+    this.impsFresh = false;
+    this.seatsFresh = false;
+    if (bidValues != null) {
+      bidValues.clear();
+    }
   }
 
   public final Bid.Builder getBid() {
     return bid;
   }
 
+  /**
+   * Returns the seat of the current bid, or {@code null} if the bid is not in the response.
+   */
+  @Nullable public final SeatBidOrBuilder findSeat() {
+    if (seat == null && bid != null) {
+      if (seats == null || ((seat = seats.get(bid)) == null && !seatsFresh)) {
+        indexSeats();
+        seat = seats.get(bid);
+      }
+    }
+    return seat;
+  }
+
+  /**
+   * Returns the request's impression with some id, or {@code null} if not found.
+   */
+  @Nullable public final ImpOrBuilder findImp(String impId) {
+    ImpOrBuilder imp = imps == null ? null : imps.get(impId);
+    if (imp == null && (imps == null || !impsFresh)) {
+      indexImps();
+      imp = imps.get(impId);
+    }
+    return imp;
+  }
+
+  private void indexSeats() {
+    seatsFresh = true;
+    seats = new IdentityHashMap<>();
+    for (SeatBidOrBuilder seatBid : response.getSeatbidOrBuilderList()) {
+      for (BidOrBuilder seatBidBid : seatBid.getBidOrBuilderList()) {
+        seats.put(seatBidBid, seatBid);
+      }
+    }
+  }
+
+  private void indexImps() {
+    impsFresh = true;
+    imps = new HashMap<>();
+    for (ImpOrBuilder reqImp : request.getImpOrBuilderList()) {
+      imps.putIfAbsent(reqImp.getId(), reqImp);
+    }
+  }
+
   public final StringBuilder builder() {
     return builder;
   }
 
+  /**
+   * Returns the memoized value of a macro, URL-encoded {@code encodeLevel} times, or
+   * {@code null} if there's no such value for the request or the current bid's scopes.
+   */
+  @Nullable public final String getMacroValue(SnippetMacroType macro, int encodeLevel) {
+    checkArgument(encodeLevel >= 0 && encodeLevel <= MAX_MEMO_LEVEL,
+        "Bad encodeLevel: %s", encodeLevel);
+    for (SnippetMacroScope scope : LOOKUP_ORDER) {
+      Map<SnippetMacroType, String[]> values = macroValues(scope, false);
+      String[] value = values == null ? null : values.get(macro);
+      if (value != null) {
+        return value[encodeLevel];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the scope where a macro's value is memoized, or {@code null} if not memoized.
+   */
+  @Nullable final SnippetMacroScope memoScope(SnippetMacroType macro) {
+    for (SnippetMacroScope scope : LOOKUP_ORDER) {
+      Map<SnippetMacroType, String[]> values = macroValues(scope, false);
+      if (values != null && values.containsKey(macro)) {
+        return scope;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Memoizes the value of a macro, URL-encoded {@code encodeLevel} times. Custom
+   * implementations of {@link SnippetProcessor#processMacroAt} can use this, and
+   * {@link #getMacroValue(SnippetMacroType, int)}, for values that are expensive to compute.
+   * Values of impression or seat scope are not memoized if the current bid has no impression
+   * id, or is not in the response.
+   */
+  public final void putMacroValue(
+      SnippetMacroScope scope, SnippetMacroType macro, int encodeLevel, String value) {
+    checkArgument(encodeLevel >= 0 && encodeLevel <= MAX_MEMO_LEVEL,
+        "Bad encodeLevel: %s", encodeLevel);
+    checkNotNull(value);
+    Map<SnippetMacroType, String[]> values = macroValues(scope, true);
+    if (values != null) {
+      // In forked contexts, the array may be updated concurrently. That's benign, since
+      // all tasks compute the same values; a task may only miss a value and recompute it.
+      values.computeIfAbsent(macro, k -> new String[MAX_MEMO_LEVEL + 1])[encodeLevel] = value;
+    }
+  }
+
+  @Nullable private Map<SnippetMacroType, String[]> macroValues(
+      SnippetMacroScope scope, boolean create) {
+    switch (scope) {
+      case REQUEST:
+        if (requestValues == null && create) {
+          requestValues = newMacroValues();
+        }
+        return requestValues;
+
+      case IMP:
+        if (bid == null || !bid.hasImpid() || (impValues == null && !create)) {
+          return null;
+        } else if (impValues == null) {
+          impValues = new HashMap<>();
+        }
+        return create
+            ? impValues.computeIfAbsent(bid.getImpid(), k -> newMacroValues())
+            : impValues.get(bid.getImpid());
+
+      case SEAT: {
+        SeatBidOrBuilder bidSeat = seatValues == null && !create ? null : findSeat();
+        if (bidSeat == null) {
+          return null;
+        } else if (seatValues == null) {
+          seatValues = new IdentityHashMap<>();
+        }
+        return create
+            ? seatValues.computeIfAbsent(bidSeat, k -> newMacroValues())
+            : seatValues.get(bidSeat);
+      }
+
+      default:
+        if (bidValues == null && create) {
+          bidValues = new HashMap<>();
+        }
+        return bidValues;
+    }
+  }
+
+  private Map<SnippetMacroType, String[]> newMacroValues() {
+    return concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+  }
+
+  /**
+   * Creates a context for processing other bids of the same response, possibly in another
+   * thread. The new context has its own builder and bid-scoped macro values, and shares with
+   * this context the indexes and all other memoized macro values. Forked contexts can be used
+   * concurrently with each other, as long as each bid is processed by a single context; but
+   * this context should not be used while its forks are in use, except for forking again.
+   */
+  public final synchronized SnippetProcessorContext fork() {
+    if (!concurrent) {
+      // Build the indexes now, so they're shared; and switch the memoized values to
+      // concurrent maps, that will be shared too.
+      indexImps();
+      indexSeats();
+      requestValues = requestValues == null
+          ? new ConcurrentHashMap<>()
+          : new ConcurrentHashMap<>(requestValues);
+      Map<String, Map<SnippetMacroType, String[]>> newImpValues = new ConcurrentHashMap<>();
+      if (impValues != null) {
+        impValues.forEach((impId, values) ->
+            newImpValues.put(impId, new ConcurrentHashMap<>(values)));
+      }
+      impValues = newImpValues;
+      Map<SeatBidOrBuilder, Map<SnippetMacroType, String[]>> newSeatValues =
+          Collections.synchronizedMap(new IdentityHashMap<>());
+      if (seatValues != null) {
+        seatValues.forEach((bidSeat, values) ->
+            newSeatValues.put(bidSeat, new ConcurrentHashMap<>(values)));
+      }
+      seatValues = newSeatValues;
+      concurrent = true;
+    }
+
+    SnippetProcessorContext fork = new SnippetProcessorContext(request, response);
+    fork.imps = imps;
+    fork.seats = seats;
+    fork.requestValues = requestValues;
+    fork.impValues = impValues;
+    fork.seatValues = seatValues;
+    fork.concurrent = true;
+    return fork;
+  }
+
+  /**
+   * Returns the number of macros being expanded, nested in the values of other macros.
+   */
+  final int depth() {
+    return depth;
+  }
+
+  /**
+   * Returns {@code true} if a macro is being expanded, so its value contains itself.
+   */
+  final boolean isExpanding(SnippetMacroType macro) {
+    for (int i = 0; i < depth; ++i) {
+      if (expanding[i] == macro) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if a macro is the innermost one being expanded, so its value
+   * contains itself directly.
+   */
+  final boolean isExpandingLast(SnippetMacroType macro) {
+    return depth != 0 && expanding[depth - 1] == macro;
+  }
+
+  /**
+   * Starts the expansion of a macro, returning an empty scratch builder for this depth.
+   */
+  final StringBuilder enter(SnippetMacroType macro) {
+    if (depth == expanding.length) {
+      expanding = Arrays.copyOf(expanding, depth + 4);
+      scratch = Arrays.copyOf(scratch, depth + 4);
+    }
+    expanding[depth] = macro;
+    StringBuilder sb = scratch[depth];
+    if (sb == null) {
+      sb = scratch[depth] = new StringBuilder();
+    }
+    ++depth;
+    sb.setLength(0);
+    return sb;
+  }
+
+  /**
+   * Ends the expansion of the last macro passed to {@link #enter(SnippetMacroType)}.
+   */
+  final void exit() {
+    expanding[--depth] = null;
+  }
+
+  /**
+   * Records a macro that was left unexpanded, because of a cycle or too much nesting.
+   * Values that contain such macros depend on the expansion path, so they are not memoized.
+   */
+  final void unexpanded() {
+    valueScope = null;
+  }
+
+  /**
+   * Starts computing the value of a macro of some scope.
+   *
+   * @return State of the enclosing value, for {@link #endValue(SnippetMacroScope)}
+   */
+  @Nullable final SnippetMacroScope startValue(SnippetMacroScope scope) {
+    SnippetMacroScope outer = valueScope;
+    valueScope = scope;
+    return outer;
+  }
+
+  /**
+   * Records that the value being computed uses the value of a macro of some scope,
+   * or {@code null} for a macro whose value can't be memoized.
+   */
+  final void useValue(@Nullable SnippetMacroScope scope) {
+    valueScope = SnippetMacroScope.narrower(valueScope, scope);
+  }
+
+  /**
+   * Finishes computing the value started by the last {@link #startValue(SnippetMacroScope)}.
+   * The enclosing value, if any, also depends on everything this value used.
+   *
+   * @return Scope for memoizing the value, or {@code null} if it can't be memoized
+   */
+  @Nullable final SnippetMacroScope endValue(@Nullable SnippetMacroScope outer) {
+    SnippetMacroScope scope = valueScope;
+    valueScope = SnippetMacroScope.narrower(outer, scope);
+    return scope;
+  }
+
+  /**
+   * Returns a scratch buffer for copying characters from the builder.
+   */
+  final char[] chars() {
+    if (chars == null) {
+      chars = new char[1024];
+    }
+    return chars;
+  }
+
   public SnippetProcessorContext rec() {
-    return new SnippetProcessorContext(request, response);
+    SnippetProcessorContext rec = new SnippetProcessorContext(request, response);
+    rec.bid = bid;
+    rec.seat = seat;
+    rec.imps = imps;
+    rec.seats = seats;
+    return rec;
   }
 
   @Override public String toString() {
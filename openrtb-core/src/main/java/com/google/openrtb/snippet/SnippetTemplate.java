@@ -0,0 +1,110 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.snippet;
+
+import com.google.common.base.MoreObjects;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+
+/**
+ * A snippet compiled by {@link SnippetProcessor#compile(String)}: a list of segments that are
+ * either literal text, or references to macros. Each segment has the URL encoding level
+ * from the {@code %{...}%} markers around it; literals are stored already encoded (both as
+ * text and as UTF-8), so rendering the template only needs to expand and encode the macros.
+ *
+ * <p>This class is immutable and threadsafe.
+ */
+public final class SnippetTemplate {
+  private final String snippet;
+  private final String[] texts;
+  private final SnippetMacroType[] macros;
+  private final int[] levels;
+  private final byte[][] utf8;
+  private final boolean constant;
+
+  SnippetTemplate(String snippet, String[] texts, SnippetMacroType[] macros, int[] levels) {
+    this.snippet = snippet;
+    this.texts = texts;
+    this.macros = macros;
+    this.levels = levels;
+    this.utf8 = new byte[texts.length][];
+    boolean constant = true;
+    for (int i = 0; i < texts.length; ++i) {
+      constant &= macros[i] == null;
+      if (texts[i] != null) {
+        utf8[i] = texts[i].getBytes(StandardCharsets.UTF_8);
+      }
+    }
+    this.constant = constant;
+  }
+
+  /**
+   * Returns the raw snippet that was compiled into this template.
+   */
+  public String snippet() {
+    return snippet;
+  }
+
+  /**
+   * Returns {@code true} if this template has no macros, so it always renders the same text.
+   */
+  public boolean isConstant() {
+    return constant;
+  }
+
+  /**
+   * Returns the number of segments.
+   */
+  public int size() {
+    return texts.length;
+  }
+
+  /**
+   * Returns the literal text of a segment, already URL-encoded; {@code null} for macros.
+   */
+  @Nullable String text(int segment) {
+    return texts[segment];
+  }
+
+  /**
+   * Returns the literal text of a segment as UTF-8; {@code null} for macros.
+   */
+  @Nullable byte[] utf8(int segment) {
+    return utf8[segment];
+  }
+
+  /**
+   * Returns the macro of a segment; {@code null} for literals.
+   */
+  @Nullable SnippetMacroType macro(int segment) {
+    return macros[segment];
+  }
+
+  /**
+   * Returns the URL encoding level of a segment.
+   */
+  int level(int segment) {
+    return levels[segment];
+  }
+
+  @Override public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("snippet", snippet)
+        .add("segments", texts.length)
+        .toString();
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Banner;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Pmp.Deal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A read-only view of a {@link BidRequest} with hash indexes for its impressions, so lookups
+ * don't need a linear scan of {@link BidRequest#getImpList()}. Each index is only built when
+ * first used, so creating a view is cheap; the view should be reused for all lookups into the
+ * same request. Lookups have the same results as the scans of {@link OpenRtbUtils}:
+ * when several impressions match, they're returned in the request's order.
+ *
+ * <p>This class is threadsafe. Indexes may be built more than once if used concurrently,
+ * which is harmless since they're immutable.
+ */
+public final class BidRequestIndex {
+  private final BidRequest request;
+  private volatile ImmutableMap<String, Imp> impsById;
+  private volatile ImmutableListMultimap<String, Imp> impsByBannerId;
+  private volatile ImmutableListMultimap<String, Imp> impsByDealId;
+  private volatile ImmutableListMultimap<Long, Imp> impsBySize;
+  private volatile MediaImps mediaImps;
+
+  private BidRequestIndex(BidRequest request) {
+    this.request = checkNotNull(request);
+  }
+
+  public static BidRequestIndex of(BidRequest request) {
+    return new BidRequestIndex(request);
+  }
+
+  public BidRequest request() {
+    return request;
+  }
+
+  /**
+   * Finds an {@link Imp} by ID.
+   *
+   * @return The first {@link Imp} that has the given id, or {@code null} if not found.
+   */
+  @Nullable public Imp impWithId(String id) {
+    checkNotNull(id);
+    ImmutableMap<String, Imp> index = impsById;
+    if (index == null) {
+      Map<String, Imp> map = new LinkedHashMap<>();
+      for (Imp imp : request.getImpList()) {
+        map.putIfAbsent(imp.getId(), imp);
+      }
+      impsById = index = ImmutableMap.copyOf(map);
+    }
+    return index.get(id);
+  }
+
+  /**
+   * Find an {@link Imp} by its ID and its {@link Banner}'s ID.
+   *
+   * @param impId Imp ID; optional if the Banner IDs are unique within the request
+   * @param bannerId Banner ID
+   * @return The {@link Imp} for a given impression ID x banner ID, or {@code null} if not found
+   */
+  @Nullable public Imp bannerImpWithId(@Nullable String impId, String bannerId) {
+    checkNotNull(bannerId);
+    ImmutableListMultimap<String, Imp> index = impsByBannerId;
+    if (index == null) {
+      ImmutableListMultimap.Builder<String, Imp> builder = ImmutableListMultimap.builder();
+      for (Imp imp : request.getImpList()) {
+        if (imp.hasBanner()) {
+          builder.put(imp.getBanner().getId(), imp);
+        }
+      }
+      impsByBannerId = index = builder.build();
+    }
+    for (Imp imp : index.get(bannerId)) {
+      if (impId == null || imp.getId().equals(impId)) {
+        return imp;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds the {@link Imp}s that have a {@link Deal} with some ID in their {@code pmp}.
+   */
+  public ImmutableList<Imp> impsWithDealId(String dealId) {
+    checkNotNull(dealId);
+    ImmutableListMultimap<String, Imp> index = impsByDealId;
+    if (index == null) {
+      ImmutableListMultimap.Builder<String, Imp> builder = ImmutableListMultimap.builder();
+      for (Imp imp : request.getImpList()) {
+        List<Deal> deals = imp.getPmp().getDealsList();
+        for (int i = 0; i < deals.size(); ++i) {
+          if (!hasDealId(deals, i, deals.get(i).getId())) {
+            builder.put(deals.get(i).getId(), imp);
+          }
+        }
+      }
+      impsByDealId = index = builder.build();
+    }
+    return index.get(dealId);
+  }
+
+  /**
+   * Finds the {@link Imp}s with a {@link Banner} of some size, either the banner's
+   * {@code w}/{@code h} or any of its {@code format}s.
+   */
+  public ImmutableList<Imp> bannerImpsWithSize(int w, int h) {
+    ImmutableListMultimap<Long, Imp> index = impsBySize;
+    if (index == null) {
+      ImmutableListMultimap.Builder<Long, Imp> builder = ImmutableListMultimap.builder();
+      for (Imp imp : request.getImpList()) {
+        if (imp.hasBanner()) {
+          Banner banner = imp.getBanner();
+          long[] sizes = new long[banner.getFormatCount() + 1];
+          int count = 0;
+          if (banner.hasW() && banner.hasH()) {
+            sizes[count++] = sizeKey(banner.getW(), banner.getH());
+          }
+          for (Banner.Format format : banner.getFormatList()) {
+            long size = sizeKey(format.getW(), format.getH());
+            if (!contains(sizes, count, size)) {
+              sizes[count++] = size;
+            }
+          }
+          for (int i = 0; i < count; ++i) {
+            builder.put(sizes[i], imp);
+          }
+        }
+      }
+      impsBySize = index = builder.build();
+    }
+    return index.get(sizeKey(w, h));
+  }
+
+  /**
+   * Returns the {@link Imp}s with a {@link Banner}.
+   */
+  public ImmutableList<Imp> bannerImps() {
+    return mediaImps().banner;
+  }
+
+  /**
+   * Returns the {@link Imp}s with a {@link com.google.openrtb.OpenRtb.BidRequest.Imp.Video}.
+   */
+  public ImmutableList<Imp> videoImps() {
+    return mediaImps().video;
+  }
+
+  /**
+   * Returns the {@link Imp}s with an {@link com.google.openrtb.OpenRtb.BidRequest.Imp.Audio}.
+   */
+  public ImmutableList<Imp> audioImps() {
+    return mediaImps().audio;
+  }
+
+  /**
+   * Returns the {@link Imp}s with a {@link com.google.openrtb.OpenRtb.BidRequest.Imp.Native}.
+   */
+  public ImmutableList<Imp> nativeImps() {
+    return mediaImps().nativ;
+  }
+
+  @Override public String toString() {
+    return "BidRequestIndex(" + request.getId() + ")";
+  }
+
+  private MediaImps mediaImps() {
+    MediaImps index = mediaImps;
+    if (index == null) {
+      mediaImps = index = new MediaImps(request);
+    }
+    return index;
+  }
+
+  private static long sizeKey(int w, int h) {
+    return ((long) w << 32) | (h & 0xFFFFFFFFL);
+  }
+
+  // Returns true if some of the first deals has a given ID.
+  private static boolean hasDealId(List<Deal> deals, int length, String dealId) {
+    for (int i = 0; i < length; ++i) {
+      if (deals.get(i).getId().equals(dealId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean contains(long[] array, int length, long value) {
+    for (int i = 0; i < length; ++i) {
+      if (array[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static final class MediaImps {
+    final ImmutableList<Imp> banner;
+    final ImmutableList<Imp> video;
+    final ImmutableList<Imp> audio;
+    final ImmutableList<Imp> nativ;
+
+    MediaImps(BidRequest request) {
+      ImmutableList.Builder<Imp> banner = ImmutableList.builder();
+      ImmutableList.Builder<Imp> video = ImmutableList.builder();
+      ImmutableList.Builder<Imp> audio = ImmutableList.builder();
+      ImmutableList.Builder<Imp> nativ = ImmutableList.builder();
+      for (Imp imp : request.getImpList()) {
+        if (imp.hasBanner()) {
+          banner.add(imp);
+        }
+        if (imp.hasVideo()) {
+          video.add(imp);
+        }
+        if (imp.hasAudio()) {
+          audio.add(imp);
+        }
+        if (imp.hasNative()) {
+          nativ.add(imp);
+        }
+      }
+      this.banner = banner.build();
+      this.video = video.build();
+      this.audio = audio.build();
+      this.nativ = nativ.build();
+    }
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+
+/**
+ * A view of a {@link com.google.openrtb.OpenRtb.BidResponse.Builder} with hash indexes for
+ * its seats and bids, so lookups don't need to scan all seats and bids like the equivalent
+ * methods of {@link OpenRtbUtils}, which have the same semantics. Bids are indexed by ID,
+ * by seat and ID, and by impression ID.
+ *
+ * <p>The index is kept consistent by the methods of this class that modify the response:
+ * {@link #seatBid(String)}, {@link #updateBids(Function)}, {@link #removeBids(Predicate)}
+ * etc. These methods update the index in place, so changes and lookups can be interleaved;
+ * only updates that change the ID or impression ID of a bid, and removals of bids or seats
+ * that share their ID with others, make the next lookup rebuild the index. Changes by other
+ * means, like adding bids to a seat returned by {@link #seatBid(String)} or setting the ID
+ * of a bid after a lookup, need a call to {@link #reindex()}.
+ *
+ * <p>This class is NOT threadsafe.
+ */
+public final class BidResponseIndex {
+  private final BidResponse.Builder response;
+  // Key null is the anonymous seat. Values are only the first seat with each ID.
+  private final Map<String, SeatBid.Builder> seats = new HashMap<>();
+  private final Map<String, Bid.Builder> bidsById = new HashMap<>();
+  private final Map<String, Map<String, Bid.Builder>> bidsBySeatAndId = new HashMap<>();
+  private final Map<String, List<Bid.Builder>> bidsByImpId = new HashMap<>();
+  // Some seats or bids have the same ID, so removing them may expose others.
+  private boolean duplicateIds;
+  private boolean indexed;
+
+  private BidResponseIndex(BidResponse.Builder response) {
+    this.response = checkNotNull(response);
+  }
+
+  public static BidResponseIndex of(BidResponse.Builder response) {
+    return new BidResponseIndex(response);
+  }
+
+  public BidResponse.Builder response() {
+    return response;
+  }
+
+  /**
+   * Discards the index, so it's rebuilt on the next lookup. Use after changing the response
+   * by means other than this class.
+   */
+  public void reindex() {
+    indexed = false;
+  }
+
+  /**
+   * @return The OpenRTB SeatBid with the specified ID; will be created if not existent.
+   * @see OpenRtbUtils#seatBid(BidResponse.Builder, String)
+   */
+  public SeatBid.Builder seatBid(String seat) {
+    checkNotNull(seat);
+    return seatBidOrNew(seat);
+  }
+
+  /**
+   * @return The anonymous OpenRTB SeatBid; will be created if not existent.
+   * @see OpenRtbUtils#seatBid(BidResponse.Builder)
+   */
+  public SeatBid.Builder seatBid() {
+    return seatBidOrNew(null);
+  }
+
+  /**
+   * Iterates all bids from a specific seat.
+   *
+   * @see OpenRtbUtils#bids(BidResponse.Builder, String)
+   */
+  public List<Bid.Builder> bids(@Nullable String seatFilter) {
+    if (seatFilter == OpenRtbUtils.SEAT_ANY) {
+      return OpenRtbUtils.bids(response, seatFilter);
+    }
+    SeatBid.Builder seatbid = index().seats.get(seatFilter);
+    return seatbid == null ? ImmutableList.of() : seatbid.getBidBuilderList();
+  }
+
+  /**
+   * Finds a bid by ID.
+   *
+   * @see OpenRtbUtils#bidWithId(BidResponse.Builder, String)
+   */
+  @Nullable public Bid.Builder bidWithId(String id) {
+    checkNotNull(id);
+    return index().bidsById.get(id);
+  }
+
+  /**
+   * Finds a bid by seat and ID.
+   *
+   * @see OpenRtbUtils#bidWithId(BidResponse.Builder, String, String)
+   */
+  @Nullable public Bid.Builder bidWithId(@Nullable String seatFilter, String id) {
+    checkNotNull(id);
+    if (seatFilter == OpenRtbUtils.SEAT_ANY) {
+      return OpenRtbUtils.bidWithId(response, seatFilter, id);
+    }
+    Map<String, Bid.Builder> seatBids = index().bidsBySeatAndId.get(seatFilter);
+    return seatBids == null ? null : seatBids.get(id);
+  }
+
+  /**
+   * Finds the bids for an impression, from all seats.
+   *
+   * @return Read-only list of bids with the given {@code impid}, grouped by seat
+   */
+  public List<Bid.Builder> bidsWithImpId(String impId) {
+    checkNotNull(impId);
+    List<Bid.Builder> bids = index().bidsByImpId.get(impId);
+    return bids == null ? ImmutableList.of() : bids;
+  }
+
+  /**
+   * Updates bids, from all seats.
+   *
+   * @see OpenRtbUtils#updateBids(BidResponse.Builder, Function)
+   */
+  public boolean updateBids(Function<Bid.Builder, Boolean> updater) {
+    return OpenRtbUtils.updateBids(response, keepIndexed(updater));
+  }
+
+  /**
+   * Updates bids from a given seat.
+   *
+   * @see OpenRtbUtils#updateBids(BidResponse.Builder, String, Function)
+   */
+  public boolean updateBids(
+      @Nullable String seatFilter, Function<Bid.Builder, Boolean> updater) {
+    return OpenRtbUtils.updateBids(response, seatFilter, keepIndexed(updater));
+  }
+
+  /**
+   * Remove bids by bid.
+   *
+   * @see OpenRtbUtils#removeBids(BidResponse.Builder, Predicate)
+   */
+  public boolean removeBids(Predicate<Bid.Builder> filter) {
+    return removeBids(OpenRtbUtils.SEAT_ANY, filter);
+  }
+
+  /**
+   * Remove bids by seat and bid.
+   *
+   * @see OpenRtbUtils#removeBids(BidResponse.Builder, String, Predicate)
+   */
+  public boolean removeBids(@Nullable String seatFilter, Predicate<Bid.Builder> bidFilter) {
+    checkNotNull(bidFilter);
+    boolean updated = false;
+
+    for (SeatBid.Builder seatbid : response.getSeatbidBuilderList()) {
+      String seat = seatId(seatbid);
+      if (seatFilter == OpenRtbUtils.SEAT_ANY || Objects.equals(seatFilter, seat)) {
+        updated |= removeBids(seat, seatbid, bidFilter) != 0;
+      }
+    }
+
+    return updated;
+  }
+
+  /**
+   * Removes bids from all seats, and then the seats left without bids.
+   *
+   * @see OpenRtbUtils#compactBids(BidResponse.Builder, Predicate)
+   */
+  public int compactBids(Predicate<Bid.Builder> filter) {
+    checkNotNull(filter);
+    int removed = 0;
+
+    for (int i = 0; i < response.getSeatbidCount(); ) {
+      SeatBid.Builder seatbid = response.getSeatbidBuilder(i);
+      String seat = seatId(seatbid);
+      int seatRemoved = removeBids(seat, seatbid, filter);
+      removed += seatRemoved;
+      if (seatRemoved != 0 && seatbid.getBidCount() == 0) {
+        response.removeSeatbid(i);
+        if (seats.get(seat) == seatbid) {
+          seats.remove(seat);
+          bidsBySeatAndId.remove(seat);
+          indexed &= !duplicateIds;
+        }
+      } else {
+        ++i;
+      }
+    }
+
+    return removed;
+  }
+
+  @Override public String toString() {
+    return "BidResponseIndex(" + response.getId() + ")";
+  }
+
+  private Function<Bid.Builder, Boolean> keepIndexed(Function<Bid.Builder, Boolean> updater) {
+    checkNotNull(updater);
+    return bid -> {
+      String id = bid.getId();
+      String impId = bid.getImpid();
+      Boolean updated = updater.apply(bid);
+      // Other fields are not indexed, and the bid's builder is still the same.
+      indexed &= id.equals(bid.getId()) && impId.equals(bid.getImpid());
+      return updated;
+    };
+  }
+
+  private int removeBids(
+      @Nullable String seat, SeatBid.Builder seatbid, Predicate<Bid.Builder> filter) {
+    List<Bid.Builder> kept = new ArrayList<>(seatbid.getBidCount());
+    int removed = OpenRtbUtils.filterBids(seatbid, bid -> {
+      if (filter.test(bid)) {
+        kept.add(bid);
+        return true;
+      }
+      if (indexed) {
+        unindex(seat, seatbid, bid);
+      }
+      return false;
+    });
+    if (removed != 0 && indexed) {
+      // The remaining bids have new builders.
+      for (int i = 0; i < kept.size(); ++i) {
+        rebind(seat, seatbid, kept.get(i), seatbid.getBidBuilder(i));
+      }
+    }
+    return removed;
+  }
+
+  private void rebind(@Nullable String seat, SeatBid.Builder seatbid,
+      Bid.Builder oldBid, Bid.Builder newBid) {
+    bidsById.replace(oldBid.getId(), oldBid, newBid);
+    if (seats.get(seat) == seatbid) {
+      bidsBySeatAndId.get(seat).replace(oldBid.getId(), oldBid, newBid);
+    }
+    List<Bid.Builder> impBids = bidsByImpId.get(oldBid.getImpid());
+    impBids.set(impBids.indexOf(oldBid), newBid);
+  }
+
+  private void unindex(@Nullable String seat, SeatBid.Builder seatbid, Bid.Builder bid) {
+    boolean wasFirst = bidsById.remove(bid.getId(), bid);
+    if (seats.get(seat) == seatbid) {
+      wasFirst |= bidsBySeatAndId.get(seat).remove(bid.getId(), bid);
+    }
+    List<Bid.Builder> impBids = bidsByImpId.get(bid.getImpid());
+    impBids.remove(bid);
+    if (impBids.isEmpty()) {
+      bidsByImpId.remove(bid.getImpid());
+    }
+    indexed &= !(wasFirst && duplicateIds);
+  }
+
+  @Nullable private static String seatId(SeatBid.Builder seatbid) {
+    return seatbid.hasSeat() ? seatbid.getSeat() : null;
+  }
+
+  private SeatBid.Builder seatBidOrNew(@Nullable String seat) {
+    SeatBid.Builder seatbid = index().seats.get(seat);
+    if (seatbid == null) {
+      seatbid = response.addSeatbidBuilder();
+      if (seat != null) {
+        seatbid.setSeat(seat);
+      }
+      seats.put(seat, seatbid);
+      bidsBySeatAndId.put(seat, new HashMap<>());
+    }
+    return seatbid;
+  }
+
+  private BidResponseIndex index() {
+    if (!indexed) {
+      seats.clear();
+      bidsById.clear();
+      bidsBySeatAndId.clear();
+      bidsByImpId.clear();
+      duplicateIds = false;
+      for (SeatBid.Builder seatbid : response.getSeatbidBuilderList()) {
+        String seat = seatId(seatbid);
+        boolean firstSeat = seats.putIfAbsent(seat, seatbid) == null;
+        Map<String, Bid.Builder> seatBids = firstSeat ? new HashMap<>() : null;
+        duplicateIds |= !firstSeat;
+        for (Bid.Builder bid : seatbid.getBidBuilderList()) {
+          duplicateIds |= bidsById.putIfAbsent(bid.getId(), bid) != null;
+          if (seatBids != null) {
+            seatBids.putIfAbsent(bid.getId(), bid);
+          }
+          bidsByImpId.computeIfAbsent(bid.getImpid(), impId -> new ArrayList<>()).add(bid);
+        }
+        if (seatBids != null) {
+          bidsBySeatAndId.put(seat, seatBids);
+        }
+      }
+      indexed = true;
+    }
+    return this;
+  }
+}
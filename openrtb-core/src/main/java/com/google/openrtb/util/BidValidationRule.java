@@ -0,0 +1,40 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBidOrBuilder;
+import javax.annotation.Nullable;
+
+/**
+ * A check of {@link OpenRtbValidator}, registered with
+ * {@link OpenRtbValidator#addRule(String, BidValidationRule)}.
+ * Implementations must be threadsafe, and should not modify the bid.
+ *
+ * @see BidValidationRules
+ */
+@FunctionalInterface
+public interface BidValidationRule {
+
+  /**
+   * Validates a bid.
+   *
+   * @param seat The bid's seat, or {@code null} if unknown
+   * @return {@code true} if the bid passes this rule
+   */
+  boolean validate(PreparedRequest request, @Nullable SeatBidOrBuilder seat, Bid.Builder bid);
+}
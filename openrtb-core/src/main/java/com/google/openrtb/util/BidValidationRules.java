@@ -0,0 +1,120 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Banner;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Pmp.Deal;
+import javax.annotation.Nullable;
+
+/**
+ * Optional {@link BidValidationRule}s, to be added to an {@link OpenRtbValidator}.
+ * Bids for impressions that are not in the request pass all these rules, since that's
+ * checked by the validator's own rules. Rules don't log; rejections are logged by the validator.
+ */
+public final class BidValidationRules {
+  private BidValidationRules() {
+  }
+
+  /**
+   * Rejects bids for deals that are not in their impression's {@code pmp}, bids from seats
+   * not allowed by the deal's {@code wseat}, and bids without a deal for private auctions.
+   */
+  public static BidValidationRule deals() {
+    return (request, seat, bid) -> {
+      Imp imp = request.imp(bid.getImpid());
+      if (imp == null) {
+        return true;
+      }
+      if (!bid.hasDealid()) {
+        return !imp.getPmp().getPrivateAuction();
+      }
+      Deal deal = deal(imp, bid.getDealid());
+      return deal != null && (seat == null || !seat.hasSeat() || deal.getWseatCount() == 0
+          || deal.getWseatList().contains(seat.getSeat()));
+    };
+  }
+
+  /**
+   * Rejects bids from seats not allowed by the request's {@code wseat} or {@code bseat}.
+   * Bids without a seat pass.
+   */
+  public static BidValidationRule seats() {
+    return (request, seat, bid) -> {
+      if (seat == null || !seat.hasSeat()) {
+        return true;
+      }
+      String seatId = seat.getSeat();
+      return (request.wseat().isEmpty() || request.wseat().contains(seatId))
+          && !request.bseat().contains(seatId);
+    };
+  }
+
+  /**
+   * Rejects bids with a size that is not one of their impression's banner sizes, from the
+   * banner's {@code w}/{@code h} or {@code format}. Bids without size, and impressions
+   * without banner sizes, pass.
+   */
+  public static BidValidationRule bannerSize() {
+    return (request, seat, bid) -> {
+      Imp imp = request.imp(bid.getImpid());
+      if (imp == null || !imp.hasBanner() || !bid.hasW() || !bid.hasH()) {
+        return true;
+      }
+      Banner banner = imp.getBanner();
+      if (!banner.hasW() && !banner.hasH() && banner.getFormatCount() == 0) {
+        return true;
+      }
+      if (banner.getW() == bid.getW() && banner.getH() == bid.getH()) {
+        return true;
+      }
+      for (int i = 0; i < banner.getFormatCount(); ++i) {
+        Banner.Format format = banner.getFormat(i);
+        if (format.getW() == bid.getW() && format.getH() == bid.getH()) {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+
+  /**
+   * Rejects bids with a price below their impression's {@code bidfloor}, or below the
+   * deal's {@code bidfloor} for bids in deals. Floors are assumed to be in the bid's currency.
+   */
+  public static BidValidationRule bidfloor() {
+    return (request, seat, bid) -> {
+      Imp imp = request.imp(bid.getImpid());
+      if (imp == null) {
+        return true;
+      }
+      Deal deal = bid.hasDealid() ? deal(imp, bid.getDealid()) : null;
+      double floor = deal == null ? imp.getBidfloor() : deal.getBidfloor();
+      return bid.getPrice() >= floor;
+    };
+  }
+
+  @Nullable private static Deal deal(Imp imp, String dealId) {
+    for (int i = 0; i < imp.getPmp().getDealsCount(); ++i) {
+      Deal deal = imp.getPmp().getDeals(i);
+      if (deal.getId().equals(dealId)) {
+        return deal;
+      }
+    }
+    return null;
+  }
+}
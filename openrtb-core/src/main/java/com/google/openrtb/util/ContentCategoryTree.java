@@ -0,0 +1,119 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.openrtb.OpenRtb.ContentCategory;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * The two-level hierarchy of IAB {@link ContentCategory}s: blocking a tier-1 category like
+ * {@code IAB7} also blocks its subcategories like {@code IAB7-12}. Each category's number is a
+ * dense index, and the subtree of each category is precomputed as a {@link ProtoEnumMasks}
+ * multi-word mask; so a set of blocked categories expands to the mask of all blocked
+ * subtrees, and checking a category is a single bit test.
+ */
+public final class ContentCategoryTree {
+  private static final ContentCategory[] PARENTS;
+  private static final long[][] SUBTREES;
+  private static final int WORDS;
+
+  static {
+    ContentCategory[] cats = ContentCategory.values();
+    int maxNumber = 0;
+    for (ContentCategory cat : cats) {
+      maxNumber = Math.max(maxNumber, cat.getNumber());
+    }
+    WORDS = (maxNumber >>> 6) + 1;
+    PARENTS = new ContentCategory[maxNumber + 1];
+    SUBTREES = new long[maxNumber + 1][];
+    for (ContentCategory cat : cats) {
+      setBit(subtree(cat), cat);
+      int sep = cat.name().indexOf('_');
+      if (sep != -1) {
+        ContentCategory parent = OpenRtbUtils.categoryFromName(cat.name().substring(0, sep));
+        if (parent != null) {
+          PARENTS[cat.getNumber()] = parent;
+          setBit(subtree(parent), cat);
+        }
+      }
+    }
+  }
+
+  private ContentCategoryTree() {
+  }
+
+  /**
+   * Returns the parent of a category, or {@code null} for tier-1 categories.
+   */
+  @Nullable public static ContentCategory parent(ContentCategory cat) {
+    return PARENTS[cat.getNumber()];
+  }
+
+  /**
+   * Returns the categories whose parent is some category, in number order.
+   */
+  public static List<ContentCategory> children(ContentCategory cat) {
+    ImmutableList.Builder<ContentCategory> children = ImmutableList.builder();
+    for (ContentCategory child : ProtoEnumMasks.toEnumSet(SUBTREES[cat.getNumber()],
+        ContentCategory.class)) {
+      if (child != cat) {
+        children.add(child);
+      }
+    }
+    return children.build();
+  }
+
+  /**
+   * Returns the mask of the categories blocked by a list of category names (Java or JSON
+   * names, like {@code IAB7_12} or {@code IAB7-12}), including their subtrees.
+   * Unknown names are ignored.
+   */
+  public static long[] blocked(List<String> catNames) {
+    long[] blocked = new long[WORDS];
+    for (int i = 0; i < catNames.size(); ++i) {
+      ContentCategory cat = OpenRtbUtils.categoryFromName(catNames.get(i));
+      if (cat != null) {
+        long[] subtree = SUBTREES[cat.getNumber()];
+        for (int word = 0; word < WORDS; ++word) {
+          blocked[word] |= subtree[word];
+        }
+      }
+    }
+    return blocked;
+  }
+
+  /**
+   * Returns {@code true} if a category is blocked by a mask created by {@link #blocked(List)}.
+   */
+  public static boolean isBlocked(long[] blocked, ContentCategory cat) {
+    return ProtoEnumMasks.contains(blocked, cat);
+  }
+
+  private static long[] subtree(ContentCategory cat) {
+    long[] subtree = SUBTREES[cat.getNumber()];
+    if (subtree == null) {
+      subtree = SUBTREES[cat.getNumber()] = new long[WORDS];
+    }
+    return subtree;
+  }
+
+  private static void setBit(long[] words, ContentCategory cat) {
+    words[cat.getNumber() >>> 6] |= 1L << cat.getNumber();
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * Matches domains against a set of blocked domains, including their subdomains: blocking
+ * {@code brand.com} also blocks {@code ads.brand.com}. The domains are kept in a trie of
+ * their labels in reverse order ({@code com}, then {@code brand}), so matching a domain costs
+ * O(labels) and doesn't allocate. Domains are case-insensitive, and a trailing dot is ignored.
+ *
+ * <p>This class is immutable and threadsafe.
+ */
+public final class DomainMatcher {
+  private static final String[] NO_LABELS = new String[0];
+  private static final Node[] NO_CHILDREN = new Node[0];
+
+  /**
+   * Matcher without any domains.
+   */
+  public static final DomainMatcher NONE = new DomainMatcher(new Node(), 0);
+
+  private final Node root;
+  private final int size;
+
+  private DomainMatcher(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Creates a matcher for some domains. A leading {@code *.} is ignored, and so are
+   * empty domains.
+   */
+  public static DomainMatcher of(Iterable<String> domains) {
+    Node root = new Node();
+    int size = 0;
+    for (String domain : domains) {
+      String normalized = normalize(checkNotNull(domain));
+      if (normalized.isEmpty()) {
+        continue;
+      }
+      Node node = root;
+      int end = normalized.length();
+      while (end >= 0) {
+        int start = normalized.lastIndexOf('.', end - 1) + 1;
+        node = node.getOrAdd(normalized.substring(start, end));
+        end = start - 1;
+      }
+      if (!node.terminal) {
+        node.terminal = true;
+        ++size;
+      }
+    }
+    return size == 0 ? NONE : new DomainMatcher(root, size);
+  }
+
+  /**
+   * Returns {@code true} if a domain, or any of its parent domains, is in the matcher.
+   */
+  public boolean matches(String domain) {
+    int end = domain.length();
+    if (end != 0 && domain.charAt(end - 1) == '.') {
+      --end;
+    }
+    Node node = root;
+    while (true) {
+      int start = domain.lastIndexOf('.', end - 1) + 1;
+      node = node.get(domain, start, end);
+      if (node == null) {
+        return false;
+      } else if (node.terminal) {
+        return true;
+      } else if (start == 0) {
+        return false;
+      }
+      end = start - 1;
+    }
+  }
+
+  /**
+   * Returns the number of distinct domains in the matcher.
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override public String toString() {
+    return "DomainMatcher(" + size + " domains)";
+  }
+
+  private static String normalize(String domain) {
+    int start = 0;
+    int end = domain.length();
+    while (start < end && Character.isWhitespace(domain.charAt(start))) {
+      ++start;
+    }
+    while (end > start && Character.isWhitespace(domain.charAt(end - 1))) {
+      --end;
+    }
+    if (domain.startsWith("*.", start)) {
+      start += 2;
+    }
+    if (end > start && domain.charAt(end - 1) == '.') {
+      --end;
+    }
+    char[] chars = new char[end - start];
+    for (int i = 0; i < chars.length; ++i) {
+      chars[i] = Character.toLowerCase(domain.charAt(start + i));
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Compares a label with a region of a domain, ignoring the domain's case.
+   */
+  private static int compare(String label, String domain, int start, int end) {
+    int len = Math.min(label.length(), end - start);
+    for (int i = 0; i < len; ++i) {
+      int diff = label.charAt(i) - Character.toLowerCase(domain.charAt(start + i));
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return label.length() - (end - start);
+  }
+
+  private static final class Node {
+    boolean terminal;
+    String[] labels = NO_LABELS;
+    Node[] children = NO_CHILDREN;
+
+    @Nullable Node get(String domain, int start, int end) {
+      int low = 0;
+      int high = labels.length - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = compare(labels[mid], domain, start, end);
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          return children[mid];
+        }
+      }
+      return null;
+    }
+
+    Node getOrAdd(String label) {
+      int index = Arrays.binarySearch(labels, label);
+      if (index >= 0) {
+        return children[index];
+      }
+      index = -index - 1;
+      Node child = new Node();
+      String[] newLabels = new String[labels.length + 1];
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(labels, 0, newLabels, 0, index);
+      System.arraycopy(children, 0, newChildren, 0, index);
+      newLabels[index] = label;
+      newChildren[index] = child;
+      System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+      System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+      labels = newLabels;
+      children = newChildren;
+      return child;
+    }
+  }
+}
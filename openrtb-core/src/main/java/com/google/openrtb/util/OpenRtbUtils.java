@@ -30,6 +30,8 @@ import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBidOrBuilder;
 import com.google.openrtb.OpenRtb.ContentCategory;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.Function;
@@ -58,6 +60,10 @@ public final class OpenRtbUtils {
    * than an equivalent {@code imp -> true} predicate.
    */
   public static final Predicate<Imp> IMP_ALL = imp -> true;
+  // Single-type filters from addFilters(), so impsWith() can recognize them.
+  private static final Predicate<Imp> IMP_BANNER = Imp::hasBanner;
+  private static final Predicate<Imp> IMP_VIDEO = Imp::hasVideo;
+  private static final Predicate<Imp> IMP_NATIVE = Imp::hasNative;
 
   private static final ImmutableMap<Object, String> CAT_TO_JSON;
   private static final ImmutableMap<String, ContentCategory> NAME_TO_CAT;
@@ -275,7 +281,7 @@ public final class OpenRtbUtils {
   }
 
   /**
-   * Remove bids by bid.
+   * Remove bids by bid. The remaining bids of each seat that lost some bids get new builders.
    *
    * @param filter Returns {@code true} to keep bid, {@code false} to remove
    * @return {@code true} if any bid was removed
@@ -293,21 +299,43 @@ public final class OpenRtbUtils {
   }
 
   private static boolean removeBids(SeatBid.Builder seatbid, Predicate<Bid.Builder> filter) {
-    List<Bid.Builder> oldBids = seatbid.getBidBuilderList();
-    Iterable<Bid.Builder> newBids = ProtoUtils.filter(oldBids, filter);
-    if (newBids == oldBids) {
-      return false;
-    } else {
-      seatbid.clearBid();
-      for (Bid.Builder bid : newBids) {
-        seatbid.addBid(bid);
+    return filterBids(seatbid, filter) != 0;
+  }
+
+  /**
+   * Removes bids from a seat in a single pass: the remaining bids are collected, and then
+   * replace all the seat's bids. The remaining bids get new builders, so builders obtained
+   * from the seat before this call are not part of it anymore, unless no bid is removed.
+   *
+   * @return number of bids removed
+   */
+  static int filterBids(SeatBid.Builder seatbid, Predicate<Bid.Builder> filter) {
+    List<Bid.Builder> bids = seatbid.getBidBuilderList();
+    int size = bids.size();
+    List<Bid> kept = null;
+    for (int i = 0; i < size; ++i) {
+      Bid.Builder bid = bids.get(i);
+      if (filter.test(bid)) {
+        if (kept != null) {
+          kept.add(bid.buildPartial());
+        }
+      } else if (kept == null) {
+        kept = new ArrayList<>(size - 1);
+        for (int j = 0; j < i; ++j) {
+          kept.add(bids.get(j).buildPartial());
+        }
       }
-      return true;
     }
+    if (kept == null) {
+      return 0;
+    }
+    seatbid.clearBid().addAllBid(kept);
+    return size - kept.size();
   }
 
   /**
-   * Remove bids by seat and bid.
+   * Remove bids by seat and bid. The remaining bids of each seat that lost some bids get
+   * new builders.
    *
    * @param seatFilter Seat ID, or {@code null} to select the anonymous seat
    * @param bidFilter Returns {@code true} to keep bid, {@code false} to remove
@@ -328,6 +356,74 @@ public final class OpenRtbUtils {
     return updated;
   }
 
+  /**
+   * Removes bids from all seats, in a single pass, and then the seats left without bids.
+   * Seats are compacted in a single pass, so the remaining bids of a seat that lost some bids
+   * get new builders; nothing is allocated if no bid is removed.
+   *
+   * @param filter Returns {@code true} to keep bid, {@code false} to remove
+   * @return Number of bids removed
+   */
+  public static int compactBids(BidResponse.Builder response, Predicate<Bid.Builder> filter) {
+    checkNotNull(filter);
+    int removed = 0;
+
+    for (int i = 0; i < response.getSeatbidCount(); ) {
+      SeatBid.Builder seatbid = response.getSeatbidBuilder(i);
+      int seatRemoved = filterBids(seatbid, filter);
+      removed += seatRemoved;
+      if (seatRemoved != 0 && seatbid.getBidCount() == 0) {
+        response.removeSeatbid(i);
+      } else {
+        ++i;
+      }
+    }
+
+    return removed;
+  }
+
+  /**
+   * Removes bids from all seats, selected by their position, and then the seats left
+   * without bids. Unlike {@link #compactBids(BidResponse.Builder, Predicate)}, bids are removed
+   * in place, so the builders of the remaining bids are still valid; this is useful when
+   * few bids are removed, and they were selected by a previous pass,
+   * for example by several filters that set bits in the same {@link BitSet}.
+   *
+   * @param removed Bids to remove: bit {@code n} selects the {@code n}-th bid of the response,
+   *     counting the bids of all seats in order. Not modified
+   * @return Number of bids removed
+   */
+  public static int compactBids(BidResponse.Builder response, BitSet removed) {
+    int next = removed.nextSetBit(0);
+    if (next == -1) {
+      return 0;
+    }
+    int count = 0;
+    int seatStart = 0;
+
+    for (int i = 0; i < response.getSeatbidCount() && next != -1; ) {
+      SeatBid.Builder seatbid = response.getSeatbidBuilder(i);
+      int seatSize = seatbid.getBidCount();
+      int seatRemoved = 0;
+      // Bids are removed from the end, so positions of the bids still to remove don't change.
+      int last = removed.previousSetBit(seatStart + seatSize - 1);
+      for (int bit = last; bit >= seatStart; bit = removed.previousSetBit(bit - 1)) {
+        seatbid.removeBid(bit - seatStart);
+        ++seatRemoved;
+      }
+      count += seatRemoved;
+      seatStart += seatSize;
+      next = removed.nextSetBit(seatStart);
+      if (seatRemoved != 0 && seatbid.getBidCount() == 0) {
+        response.removeSeatbid(i);
+      } else {
+        ++i;
+      }
+    }
+
+    return count;
+  }
+
   /**
    * Finds an {@link Imp} by ID.
    *
@@ -366,6 +462,40 @@ public final class OpenRtbUtils {
     return null;
   }
 
+  /**
+   * Finds an {@link Imp} by ID, using the index.
+   *
+   * @return The {@link Imp}s that has the given id, or {@code null} if not found.
+   */
+  @Nullable public static Imp impWithId(BidRequestIndex request, String id) {
+    return request.impWithId(id);
+  }
+
+  /**
+   * Find an {@link Imp} by its ID and its {@link Banner}'s ID, using the index.
+   *
+   * @param impId Imp ID; optional if the Banner IDs are unique within the request
+   * @param bannerId Banner ID
+   * @return The {@link Imp} for a given impression ID x banner ID, or {@code null} if not found
+   */
+  @Nullable public static Imp bannerImpWithId(
+      BidRequestIndex request, @Nullable String impId, String bannerId) {
+    return request.bannerImpWithId(impId, bannerId);
+  }
+
+  /**
+   * Finds impressions by a custom criteria, using the index. Works like
+   * {@link #impsWith(BidRequest, Predicate)}, but if the filter was created by
+   * {@link #addFilters(Predicate, boolean, boolean, boolean)} from {@link #IMP_ALL} with
+   * a single impression type, the result comes from the index without testing impressions.
+   */
+  public static Iterable<Imp> impsWith(BidRequestIndex request, Predicate<Imp> impFilter) {
+    return impFilter == IMP_BANNER ? request.bannerImps()
+        : impFilter == IMP_VIDEO ? request.videoImps()
+        : impFilter == IMP_NATIVE ? request.nativeImps()
+        : impsWith(request.request(), impFilter);
+  }
+
   /**
    * Optimized code for most filtered lookups. This is worth the effort
    * because bidder code may invoke these lookup methods intensely;
@@ -450,13 +580,13 @@ public final class OpenRtbUtils {
 
     Predicate<Imp> typeFilter = null;
     if (banner) {
-      typeFilter = Imp::hasBanner;
+      typeFilter = IMP_BANNER;
     }
     if (video) {
-      typeFilter = typeFilter == null ? Imp::hasVideo : typeFilter.or(Imp::hasVideo);
+      typeFilter = typeFilter == null ? IMP_VIDEO : typeFilter.or(IMP_VIDEO);
     }
     if (nativ) {
-      typeFilter = typeFilter == null ? Imp::hasNative : typeFilter.or(Imp::hasNative);
+      typeFilter = typeFilter == null ? IMP_NATIVE : typeFilter.or(IMP_NATIVE);
     }
 
     return baseFilter == IMP_ALL ? typeFilter : baseFilter.and(typeFilter);
@@ -16,19 +16,25 @@
 
 package com.google.openrtb.util;
 
-import com.codahale.metrics.Counter;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.openrtb.OpenRtb.BidRequest;
-import com.google.openrtb.OpenRtb.BidRequest.Imp;
 import com.google.openrtb.OpenRtb.BidRequest.Imp.Banner;
 import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBidOrBuilder;
 import com.google.openrtb.OpenRtb.CreativeAttribute;
+import com.google.openrtb.util.PreparedRequest.PreparedImp;
+import com.google.protobuf.TextFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.slf4j.Logger;
@@ -41,94 +47,329 @@ import org.slf4j.LoggerFactory;
  * Fatal validation errors (that would likely cause the bid to be rejected by the exchange)
  * will also be removed from the response.
  *
+ * <p>Each check is a {@link BidValidationRule}, with a counter of rejected bids. The standard
+ * rules check the impression id, the blocked advertisers, categories and creative attributes;
+ * more rules can be added with {@link #addRule(String, BidValidationRule)}, like the ones from
+ * {@link BidValidationRules}. In {@link Mode#REJECT_FIRST} mode, rules are reordered at
+ * runtime by their observed cost and rejection rate, so bids are rejected as soon as possible.
+ *
+ * <p>Metrics: for each rule, a counter of rejected bids named after the rule, and counters
+ * broken down by seat and media type, named {@code <rule>.<seat>.<media>}. Seats are only
+ * tracked individually if provided to the constructor, otherwise they're counted as
+ * {@code other-seat}. All counters are registered upfront. There's also a timer for the
+ * validation of responses. Rejected bids are logged (at debug level) for only a sample of
+ * the rejections, see {@link #setDebugSampleRate(int)}.
+ *
  * <p>This class is threadsafe. Recommended use is as a singleton, but you may also want to create
  * multiple instances if you need to keep track of metrics separately for different uses
  * (for that to make sense, provide a different {@link MetricRegistry} to each instance).
+ * Rules should be added before the validator is used.
  */
 @Singleton
 public class OpenRtbValidator {
   private static final Logger logger = LoggerFactory.getLogger(OpenRtbValidator.class);
 
-  private final Counter unmatchedImp = new Counter();
-  private final Counter invalidCreatAttr = new Counter();
-  private final Counter invalidAdv = new Counter();
+  /**
+   * How bids are validated.
+   */
+  public enum Mode {
+    /**
+     * All rules are evaluated, in the order they were added, and every rule that rejects
+     * the bid is counted; except for bids for impressions that are not in the request,
+     * that are only counted as {@code unmatched-imp}.
+     */
+    COLLECT_ALL,
+    /**
+     * Validation stops at the first rule that rejects the bid; rules are evaluated in an
+     * adaptive order.
+     */
+    REJECT_FIRST,
+  }
+
+  /**
+   * One in this many rejections is logged, by default.
+   */
+  public static final int DEFAULT_DEBUG_SAMPLE_RATE = 64;
+
+  private final ValidationMetrics metrics;
+  private final Timer validateTimer;
+  private final DomainMatcher blockedAdvertisers;
+  private final ValidationPipeline pipeline =
+      new ValidationPipeline(this::debugRejected, DEFAULT_DEBUG_SAMPLE_RATE);
+  private volatile Mode mode = Mode.COLLECT_ALL;
 
   @Inject
   public OpenRtbValidator(MetricRegistry metricRegistry) {
-    metricRegistry.register(MetricRegistry.name(getClass(), "unmatched-imp"),
-        unmatchedImp);
-    metricRegistry.register(MetricRegistry.name(getClass(), "invalid-creative-attr"),
-        invalidCreatAttr);
-    metricRegistry.register(MetricRegistry.name(getClass(), "invalid-advertiser"),
-        invalidAdv);
+    this(metricRegistry, DomainMatcher.NONE);
+  }
+
+  /**
+   * Creates a validator with a global list of blocked advertiser domains, that applies to
+   * all requests in addition to their own {@code badv}.
+   */
+  public OpenRtbValidator(MetricRegistry metricRegistry, DomainMatcher blockedAdvertisers) {
+    this(metricRegistry, blockedAdvertisers, ImmutableList.of());
+  }
+
+  /**
+   * Creates a validator with a global list of blocked advertiser domains, and the seats
+   * that get their own rejection counters.
+   */
+  public OpenRtbValidator(MetricRegistry metricRegistry, DomainMatcher blockedAdvertisers,
+      Iterable<String> metricSeats) {
+    this.metrics = new ValidationMetrics(checkNotNull(metricRegistry), getClass(), metricSeats);
+    this.validateTimer = metricRegistry.timer(MetricRegistry.name(getClass(), "validate"));
+    this.blockedAdvertisers = checkNotNull(blockedAdvertisers);
+    // Like other rules, but bids for unknown impressions are not checked any further.
+    pipeline.add("unmatched-imp", (request, seat, bid) -> validateImp(request, bid),
+        metrics.register("unmatched-imp"), true);
+    addRule("invalid-advertiser", (request, seat, bid) -> validateAdvertisers(request, bid));
+    addRule("invalid-category", (request, seat, bid) -> validateCats(request, bid));
+    addRule("invalid-creative-attr", (request, seat, bid) -> validateAttrs(request, bid));
+  }
+
+  /**
+   * Adds a rule, with counters of rejected bids named after the rule.
+   *
+   * @throws IllegalArgumentException if there's already a rule or metric with the same name
+   */
+  public OpenRtbValidator addRule(String name, BidValidationRule rule) {
+    checkNotNull(rule);
+    pipeline.add(name, rule, metrics.register(name));
+    return this;
+  }
+
+  public OpenRtbValidator setMode(Mode mode) {
+    this.mode = checkNotNull(mode);
+    return this;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Sets the rate of rejections passed to {@link #debugRejected}: one in {@code rate},
+   * or none if zero. Default is {@link #DEFAULT_DEBUG_SAMPLE_RATE}.
+   */
+  public OpenRtbValidator setDebugSampleRate(int rate) {
+    pipeline.setDebugSampleRate(rate);
+    return this;
+  }
+
+  public int getDebugSampleRate() {
+    return pipeline.getDebugSampleRate();
+  }
+
+  /**
+   * Returns the names of the rules, in the order they're evaluated in
+   * {@link Mode#REJECT_FIRST} mode.
+   */
+  public ImmutableList<String> ruleOrder() {
+    return ImmutableList.copyOf(pipeline.order());
+  }
+
+  /**
+   * Prepares a request for the validation of many bids.
+   */
+  public PreparedRequest prepare(BidRequest request) {
+    return new PreparedRequest(request);
   }
 
   public boolean validate(BidRequest request, BidResponse.Builder response) {
-    return !OpenRtbUtils.removeBids(response, bid -> validate(request, bid));
+    try (Timer.Context timing = validateTimer.time()) {
+      return validateBids(prepare(request), response);
+    }
   }
 
+  /**
+   * Validates a bid. This prepares the request for each call, so callers that validate
+   * many bids for the same request should use {@link #prepare(BidRequest)} and
+   * {@link #validate(PreparedRequest, Bid.Builder)} instead.
+   *
+   * @return {@code true} if the bid has no fatal errors
+   */
   public boolean validate(BidRequest request, Bid.Builder bid) {
-    Imp imp = OpenRtbUtils.impWithId(request, bid.getImpid());
-    if (imp == null) {
-      unmatchedImp.inc();
-      if (logger.isDebugEnabled()) {
-        logger.debug("{} rejected, unmatched impid: {}", logId(bid), bid.getImpid());
-      }
-      return false;
+    return validate(prepare(request), bid);
+  }
+
+  /**
+   * Validates all bids of a response, removing the bids with fatal errors.
+   *
+   * @return {@code true} if all bids are valid
+   */
+  public boolean validate(PreparedRequest request, BidResponse.Builder response) {
+    try (Timer.Context timing = validateTimer.time()) {
+      return validateBids(request, response);
     }
-    boolean goodBid = true;
+  }
+
+  private boolean validateBids(PreparedRequest request, BidResponse.Builder response) {
+    boolean updated = false;
 
-    List<String> badAdvs = check(request.getBadvList(), bid.getAdomainList());
-    if (!badAdvs.isEmpty()) {
-      if (logger.isDebugEnabled()) {
-        logger.debug("{} rejected, blocked adomain values: {}", logId(bid), badAdvs);
+    for (SeatBid.Builder seat : response.getSeatbidBuilderList()) {
+      List<Bid.Builder> oldBids = seat.getBidBuilderList();
+      List<Bid.Builder> newBids =
+          ProtoUtils.filter(oldBids, bid -> validate(request, seat, bid));
+      if (newBids != oldBids) {
+        seat.clearBid();
+        for (Bid.Builder bid : newBids) {
+          seat.addBid(bid);
+        }
+        updated = true;
       }
-      invalidAdv.inc();
-      goodBid = false;
     }
 
-    if (imp.hasBanner()) {
-      goodBid &= validateCreats(bid, check(imp.getBanner().getBattrList(), bid.getAttrList()));
+    return !updated;
+  }
+
+  /**
+   * Validates a bid.
+   *
+   * @return {@code true} if the bid has no fatal errors
+   */
+  public boolean validate(PreparedRequest request, Bid.Builder bid) {
+    return validate(request, null, bid);
+  }
+
+  /**
+   * Validates a bid, from some seat.
+   *
+   * @param seat The bid's seat, or {@code null} if unknown
+   * @return {@code true} if the bid has no fatal errors
+   */
+  public boolean validate(
+      PreparedRequest request, @Nullable SeatBidOrBuilder seat, Bid.Builder bid) {
+    return pipeline.validate(request, seat, bid, mode == Mode.REJECT_FIRST);
+  }
+
+  /**
+   * Checks a bid that is still being read, with the standard rules that can't pass after
+   * failing for a partial bid: impression (only after the {@code impid} is set), advertisers,
+   * categories and creative attributes. Doesn't update metrics.
+   *
+   * @return {@code true} if the bid will be rejected, whatever its remaining fields
+   */
+  public boolean rejectsEarly(PreparedRequest request, Bid.Builder partialBid) {
+    return (partialBid.hasImpid() && !validateImp(request, partialBid))
+        || !validateAdvertisers(request, partialBid)
+        || !validateCats(request, partialBid)
+        || !validateAttrs(request, partialBid);
+  }
+
+  /**
+   * Called for a sample of the rejected bids. The default implementation logs the bid
+   * at debug level.
+   *
+   * @param rule Name of the rule that rejected the bid
+   * @param seat The bid's seat, or {@code null} if unknown
+   */
+  protected void debugRejected(String rule, @Nullable SeatBidOrBuilder seat, Bid.Builder bid) {
+    if (logger.isDebugEnabled()) {
+      logger.debug("{} rejected by {}, seat {}: {}", logId(bid), rule,
+          seat == null ? null : seat.getSeat(), TextFormat.shortDebugString(bid));
+    }
+  }
+
+  protected boolean validateImp(PreparedRequest request, Bid.Builder bid) {
+    return request.preparedImp(bid.getImpid()) != null;
+  }
+
+  protected boolean validateAdvertisers(PreparedRequest request, Bid.Builder bid) {
+    DomainMatcher badv = request.badvMatcher();
+    if (!badv.isEmpty() || !blockedAdvertisers.isEmpty()) {
+      for (int i = 0; i < bid.getAdomainCount(); ++i) {
+        String adomain = bid.getAdomain(i);
+        if (badv.matches(adomain) || blockedAdvertisers.matches(adomain)) {
+          return false;
+        }
+      }
     }
+    return true;
+  }
 
-    if (imp.hasVideo()) {
-      goodBid &= validateCreats(bid, check(imp.getVideo().getBattrList(), bid.getAttrList()));
-      goodBid &= validateCompanions(bid, imp.getVideo().getCompanionadList());
+  /**
+   * Validates a bid's creative attributes against the blocked attributes of its impression,
+   * for each media type and companion ad. Bids for unknown impressions pass.
+   */
+  protected boolean validateAttrs(PreparedRequest request, Bid.Builder bid) {
+    PreparedImp imp = request.preparedImp(bid.getImpid());
+    if (imp == null) {
+      return true;
     }
+    long attrs = ProtoEnumMasks.mask(bid.getAttrList());
+    return (!imp.imp.hasBanner() || validateCreats(bid, imp.bannerBattr & attrs))
+        && (!imp.imp.hasVideo() || (validateCreats(bid, imp.videoBattr & attrs)
+            && (validateCompanions(bid, imp.videoCompanionBattr, attrs)
+                || validateCompanions(bid, imp.imp.getVideo().getCompanionadList()))))
+        && (!imp.imp.hasAudio() || (validateCreats(bid, imp.audioBattr & attrs)
+            && (validateCompanions(bid, imp.audioCompanionBattr, attrs)
+                || validateCompanions(bid, imp.imp.getAudio().getCompanionadList()))));
+  }
 
-    if (imp.hasAudio()) {
-      goodBid &= validateCreats(bid, check(imp.getAudio().getBattrList(), bid.getAttrList()));
-      goodBid &= validateCompanions(bid, imp.getAudio().getCompanionadList());
+  /**
+   * Validates a bid's categories against the request's blocked categories, including
+   * subcategories of blocked categories.
+   */
+  protected boolean validateCats(PreparedRequest request, Bid.Builder bid) {
+    for (int i = 0; i < bid.getCatCount(); ++i) {
+      if (request.isBlockedCategory(bid.getCat(i))) {
+        return false;
+      }
     }
+    return true;
+  }
 
-    return goodBid;
+  /**
+   * Handles the creative attributes of a bid that are blocked by the request,
+   * as a {@link ProtoEnumMasks mask}.
+   *
+   * @return {@code true} if no attributes are blocked
+   */
+  protected boolean validateCreats(Bid.Builder bid, long badCreats) {
+    return badCreats == 0 || validateCreats(
+        bid, new ArrayList<>(ProtoEnumMasks.toEnumSet(badCreats, CreativeAttribute.class)));
   }
 
+  /**
+   * Handles the creative attributes of a bid that are blocked by the request. Only called
+   * by {@link #validateCreats(Bid.Builder, long)} when some attribute is blocked.
+   *
+   * @return {@code true} if no attributes are blocked
+   * @deprecated Override {@link #validateCreats(Bid.Builder, long)}
+   */
+  @Deprecated
   protected boolean validateCreats(Bid.Builder bid, List<CreativeAttribute> badCreats) {
-    if (badCreats.isEmpty()) {
-      return true;
-    }
+    return badCreats.isEmpty();
+  }
 
-    if (logger.isDebugEnabled()) {
-      logger.debug("{} rejected, blocked attr values: {}", logId(bid), badCreats);
+  /**
+   * Validates a bid's creative attributes against the blocked attributes of companion ads,
+   * all as {@link ProtoEnumMasks masks}.
+   */
+  protected boolean validateCompanions(Bid.Builder bid, long[] companionBattrs, long attrs) {
+    for (long companionBattr : companionBattrs) {
+      if ((companionBattr & attrs) != 0) {
+        return false;
+      }
     }
-    invalidCreatAttr.inc();
-    return false;
+    return true;
   }
 
+  /**
+   * Validates a bid's creative attributes against the blocked attributes of companion ads.
+   * Only called when {@link #validateCompanions(Bid.Builder, long[], long)} fails.
+   *
+   * @deprecated Override {@link #validateCompanions(Bid.Builder, long[], long)}
+   */
+  @Deprecated
   protected boolean validateCompanions(Bid.Builder bid, List<Banner> companions) {
+    long attrs = ProtoEnumMasks.mask(bid.getAttrList());
     for (Banner companion : companions) {
-      List<CreativeAttribute> badCompCreats =
-          check(companion.getBattrList(), bid.getAttrList());
-      if (!badCompCreats.isEmpty()) {
-        if (logger.isDebugEnabled()) {
-          logger.debug("{} rejected, blocked attr values: {}", logId(bid), badCompCreats);
-        }
-        invalidCreatAttr.inc();
+      if ((ProtoEnumMasks.mask(companion.getBattrList()) & attrs) != 0) {
         return false;
       }
     }
-
     return true;
   }
 
@@ -144,6 +385,13 @@ public class OpenRtbValidator {
     return sb.append(')').toString();
   }
 
+  /**
+   * Returns the response values that are also in the request's values.
+   *
+   * @deprecated Only kept for compatibility; the validator checks attributes as
+   *     {@link ProtoEnumMasks masks}
+   */
+  @Deprecated
   protected static <T> List<T> check(List<T> reqAttrs, List<T> respAttrs) {
     List<T> bad = null;
 
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Banner;
+import com.google.openrtb.OpenRtb.ContentCategory;
+import com.google.openrtb.util.ValidationMetrics.MediaType;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link BidRequest} prepared for the validation of many bids, with a hash index for
+ * the impressions by id, a trie for the blocked advertisers, and bitmasks for the blocked
+ * categories and the blocked creative attributes of each impression. Created by
+ * {@link OpenRtbValidator#prepare(BidRequest)}, once per request, so validating each bid
+ * doesn't need linear scans or temporary collections.
+ *
+ * <p>This class is immutable and threadsafe.
+ */
+public final class PreparedRequest {
+  private final BidRequest request;
+  private final ImmutableMap<String, PreparedImp> imps;
+  private final ImmutableSet<String> badv;
+  private final DomainMatcher badvMatcher;
+  private final long[] bcat;
+  private final ImmutableSet<String> bcatOther;
+  private final ImmutableSet<String> wseat;
+  private final ImmutableSet<String> bseat;
+
+  PreparedRequest(BidRequest request) {
+    this.request = checkNotNull(request);
+    Map<String, PreparedImp> impMap = new LinkedHashMap<>();
+    for (Imp imp : request.getImpList()) {
+      // Same as OpenRtbUtils.impWithId(): the first impression wins.
+      impMap.putIfAbsent(imp.getId(), new PreparedImp(imp));
+    }
+    this.imps = ImmutableMap.copyOf(impMap);
+    this.badv = ImmutableSet.copyOf(request.getBadvList());
+    this.badvMatcher = DomainMatcher.of(badv);
+    this.bcat = ContentCategoryTree.blocked(request.getBcatList());
+    ImmutableSet.Builder<String> bcatOther = ImmutableSet.builder();
+    for (String catName : request.getBcatList()) {
+      if (OpenRtbUtils.categoryFromName(catName) == null) {
+        bcatOther.add(catName);
+      }
+    }
+    this.bcatOther = bcatOther.build();
+    this.wseat = ImmutableSet.copyOf(request.getWseatList());
+    this.bseat = ImmutableSet.copyOf(request.getBseatList());
+  }
+
+  public BidRequest request() {
+    return request;
+  }
+
+  /**
+   * Returns the impression with some id, or {@code null} if not found.
+   */
+  @Nullable public Imp imp(String impId) {
+    PreparedImp imp = imps.get(impId);
+    return imp == null ? null : imp.imp;
+  }
+
+  /**
+   * Returns the blocked advertiser domains.
+   */
+  public ImmutableSet<String> badv() {
+    return badv;
+  }
+
+  /**
+   * Returns a matcher for the blocked advertiser domains, that also matches their subdomains.
+   */
+  public DomainMatcher badvMatcher() {
+    return badvMatcher;
+  }
+
+  /**
+   * Returns the allowed buyer seats; empty if all seats are allowed.
+   */
+  public ImmutableSet<String> wseat() {
+    return wseat;
+  }
+
+  /**
+   * Returns the blocked buyer seats.
+   */
+  public ImmutableSet<String> bseat() {
+    return bseat;
+  }
+
+  /**
+   * Returns {@code true} if a category is blocked by the request's {@code bcat}, either
+   * directly or by its parent category. Names that are not IAB {@link ContentCategory}s
+   * are only blocked by the same name.
+   */
+  public boolean isBlockedCategory(String catName) {
+    ContentCategory cat = OpenRtbUtils.categoryFromName(catName);
+    return cat == null
+        ? bcatOther.contains(catName)
+        : ContentCategoryTree.isBlocked(bcat, cat);
+  }
+
+  @Nullable PreparedImp preparedImp(String impId) {
+    return imps.get(impId);
+  }
+
+  @Override public String toString() {
+    return "PreparedRequest(" + request.getId() + ")";
+  }
+
+  /**
+   * Blocked creative attributes of an impression, for each of its media types,
+   * as {@link ProtoEnumMasks}; and the media type for metrics.
+   */
+  static final class PreparedImp {
+    final Imp imp;
+    final MediaType mediaType;
+    final long bannerBattr;
+    final long videoBattr;
+    final long[] videoCompanionBattr;
+    final long audioBattr;
+    final long[] audioCompanionBattr;
+
+    PreparedImp(Imp imp) {
+      this.imp = imp;
+      this.mediaType = MediaType.of(imp);
+      this.bannerBattr = ProtoEnumMasks.mask(imp.getBanner().getBattrList());
+      this.videoBattr = ProtoEnumMasks.mask(imp.getVideo().getBattrList());
+      this.videoCompanionBattr = companionBattr(imp.getVideo().getCompanionadList());
+      this.audioBattr = ProtoEnumMasks.mask(imp.getAudio().getBattrList());
+      this.audioCompanionBattr = companionBattr(imp.getAudio().getCompanionadList());
+    }
+
+    private static long[] companionBattr(List<Banner> companions) {
+      long[] battr = new long[companions.size()];
+      for (int i = 0; i < battr.length; ++i) {
+        battr[i] = ProtoEnumMasks.mask(companions.get(i).getBattrList());
+      }
+      return battr;
+    }
+  }
+}
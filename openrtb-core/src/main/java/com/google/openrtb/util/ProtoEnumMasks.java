@@ -0,0 +1,150 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import com.google.protobuf.ProtocolMessageEnum;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Sets of protobuf enum values as primitive bitmasks, indexed by the values' numbers.
+ * The OpenRTB enums have small, dense numbers: most of them fit in a single {@code long},
+ * so set operations like the intersection of blocked and declared creative attributes
+ * are a single AND. Enums with larger numbers (like {@code ContentCategory}) can use
+ * the {@code long[]} variants.
+ *
+ * <p>Negative numbers, like some values of {@code StartDelay}, are not supported.
+ */
+public final class ProtoEnumMasks {
+  /**
+   * Largest enum number supported by the {@code long} masks.
+   */
+  public static final int MAX_MASK_NUMBER = Long.SIZE - 1;
+
+  private ProtoEnumMasks() {
+  }
+
+  /**
+   * Returns the mask for a single enum value.
+   *
+   * @throws IllegalArgumentException if the value's number is negative or larger than
+   *     {@link #MAX_MASK_NUMBER}
+   */
+  public static long mask(ProtocolMessageEnum value) {
+    int number = value.getNumber();
+    if (number < 0 || number > MAX_MASK_NUMBER) {
+      throw new IllegalArgumentException("Enum number out of mask range: " + value);
+    }
+    return 1L << number;
+  }
+
+  /**
+   * Returns the mask for a list of enum values, like a proto repeated field.
+   *
+   * @throws IllegalArgumentException if some value's number is negative or larger than
+   *     {@link #MAX_MASK_NUMBER}
+   */
+  public static long mask(List<? extends ProtocolMessageEnum> values) {
+    long mask = 0;
+    for (int i = 0; i < values.size(); ++i) {
+      mask |= mask(values.get(i));
+    }
+    return mask;
+  }
+
+  /**
+   * Returns {@code true} if a mask contains an enum value.
+   */
+  public static boolean contains(long mask, ProtocolMessageEnum value) {
+    int number = value.getNumber();
+    return number >= 0 && number <= MAX_MASK_NUMBER && (mask & (1L << number)) != 0;
+  }
+
+  /**
+   * Returns the multi-word mask for a list of enum values, with any non-negative numbers.
+   *
+   * @throws IllegalArgumentException if some value's number is negative
+   */
+  public static long[] words(List<? extends ProtocolMessageEnum> values) {
+    long[] words = new long[0];
+    for (int i = 0; i < values.size(); ++i) {
+      int number = values.get(i).getNumber();
+      if (number < 0) {
+        throw new IllegalArgumentException("Negative enum number: " + values.get(i));
+      }
+      int word = number >>> 6;
+      if (word >= words.length) {
+        words = Arrays.copyOf(words, word + 1);
+      }
+      words[word] |= 1L << number;
+    }
+    return words;
+  }
+
+  /**
+   * Returns {@code true} if a multi-word mask contains an enum value.
+   */
+  public static boolean contains(long[] words, ProtocolMessageEnum value) {
+    int number = value.getNumber();
+    return number >= 0 && (number >>> 6) < words.length
+        && (words[number >>> 6] & (1L << number)) != 0;
+  }
+
+  /**
+   * Returns {@code true} if two multi-word masks have any value in common.
+   */
+  public static boolean intersects(long[] words1, long[] words2) {
+    for (int i = Math.min(words1.length, words2.length) - 1; i >= 0; --i) {
+      if ((words1[i] & words2[i]) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Converts a mask to an {@link EnumSet}, ignoring numbers that are not in the enum.
+   */
+  public static <E extends Enum<E> & ProtocolMessageEnum> EnumSet<E> toEnumSet(
+      long mask, Class<E> enumType) {
+    EnumSet<E> set = EnumSet.noneOf(enumType);
+    if (mask != 0) {
+      for (E value : enumType.getEnumConstants()) {
+        if (contains(mask, value)) {
+          set.add(value);
+        }
+      }
+    }
+    return set;
+  }
+
+  /**
+   * Converts a multi-word mask to an {@link EnumSet}, ignoring numbers that are not
+   * in the enum.
+   */
+  public static <E extends Enum<E> & ProtocolMessageEnum> EnumSet<E> toEnumSet(
+      long[] words, Class<E> enumType) {
+    EnumSet<E> set = EnumSet.noneOf(enumType);
+    for (E value : enumType.getEnumConstants()) {
+      if (contains(words, value)) {
+        set.add(value);
+      }
+    }
+    return set;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBidOrBuilder;
+import com.google.openrtb.util.PreparedRequest.PreparedImp;
+import java.util.Locale;
+import javax.annotation.Nullable;
+
+/**
+ * Rejection counters of {@link OpenRtbValidator}: for each rule, a total counter and a
+ * breakdown by seat and media type. All counters are registered upfront, with the seats
+ * known at construction time; other seats are counted as {@link #OTHER_SEAT}. Updating
+ * a counter is an array lookup, without building metric names or touching the registry.
+ *
+ * <p>This class is threadsafe.
+ */
+final class ValidationMetrics {
+  static final String OTHER_SEAT = "other-seat";
+
+  /**
+   * Media type of a bid, from the impression it bids for.
+   */
+  enum MediaType {
+    BANNER, VIDEO, AUDIO, NATIVE,
+    /** Impression with more than one media type. */
+    MULTIPLE,
+    /** Impression without media type, or not in the request. */
+    UNKNOWN;
+
+    final String metricName = name().toLowerCase(Locale.US);
+
+    static MediaType of(Imp imp) {
+      int count = (imp.hasBanner() ? 1 : 0) + (imp.hasVideo() ? 1 : 0)
+          + (imp.hasAudio() ? 1 : 0) + (imp.hasNative() ? 1 : 0);
+      return count == 0 ? UNKNOWN
+          : count > 1 ? MULTIPLE
+          : imp.hasBanner() ? BANNER
+          : imp.hasVideo() ? VIDEO
+          : imp.hasAudio() ? AUDIO
+          : NATIVE;
+    }
+  }
+
+  private static final MediaType[] MEDIA_TYPES = MediaType.values();
+
+  private final MetricRegistry metricRegistry;
+  private final Class<?> owner;
+  private final ImmutableMap<String, Integer> seatIndex;
+  private final String[] seatNames;
+
+  ValidationMetrics(MetricRegistry metricRegistry, Class<?> owner, Iterable<String> seats) {
+    this.metricRegistry = metricRegistry;
+    this.owner = owner;
+    ImmutableMap.Builder<String, Integer> seatIndex = ImmutableMap.builder();
+    int index = 0;
+    for (String seat : seats) {
+      seatIndex.put(seat, index++);
+    }
+    this.seatIndex = seatIndex.build();
+    this.seatNames = this.seatIndex.keySet().toArray(new String[index + 1]);
+    this.seatNames[index] = OTHER_SEAT;
+  }
+
+  /**
+   * Registers the counters for a rule.
+   *
+   * @throws IllegalArgumentException if the counters are already registered
+   */
+  RuleCounters register(String rule) {
+    Counter total = counter(MetricRegistry.name(owner, rule));
+    Counter[] breakdown = new Counter[seatNames.length * MEDIA_TYPES.length];
+    for (int seat = 0; seat < seatNames.length; ++seat) {
+      for (MediaType mediaType : MEDIA_TYPES) {
+        breakdown[seat * MEDIA_TYPES.length + mediaType.ordinal()] = counter(
+            MetricRegistry.name(owner, rule, seatNames[seat], mediaType.metricName));
+      }
+    }
+    return new RuleCounters(total, breakdown);
+  }
+
+  private Counter counter(String name) {
+    return metricRegistry.register(name, new Counter());
+  }
+
+  private int seatIndex(@Nullable SeatBidOrBuilder seat) {
+    Integer index = seat == null || !seat.hasSeat() ? null : seatIndex.get(seat.getSeat());
+    return index == null ? seatNames.length - 1 : index;
+  }
+
+  /**
+   * Rejection counters of a rule.
+   */
+  final class RuleCounters {
+    private final Counter total;
+    private final Counter[] breakdown;
+
+    private RuleCounters(Counter total, Counter[] breakdown) {
+      this.total = total;
+      this.breakdown = breakdown;
+    }
+
+    void rejected(PreparedRequest request, @Nullable SeatBidOrBuilder seat, Bid.Builder bid) {
+      PreparedImp imp = request.preparedImp(bid.getImpid());
+      MediaType mediaType = imp == null ? MediaType.UNKNOWN : imp.mediaType;
+      total.inc();
+      breakdown[seatIndex(seat) * MEDIA_TYPES.length + mediaType.ordinal()].inc();
+    }
+  }
+}
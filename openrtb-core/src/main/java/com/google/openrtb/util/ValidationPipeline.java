@@ -0,0 +1,195 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBidOrBuilder;
+import com.google.openrtb.util.ValidationMetrics.RuleCounters;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+/**
+ * Runs the rules of {@link OpenRtbValidator}, counting the rejections of each rule.
+ *
+ * <p>In reject-first mode, validation stops at the first rule that rejects a bid, so the
+ * order of rules matters. The pipeline samples the cost and the rejection rate of each rule,
+ * and periodically sorts the rules by increasing cost per rejection: cheap rules that reject
+ * many bids go first. In collect-all mode, all rules are evaluated in registration order,
+ * except that a rule added as a stop rule ends the validation of the bids it rejects
+ * in both modes.
+ *
+ * <p>Rejections are counted for every bid, but only a sample of them is passed to the
+ * {@link DebugCapture}, so the hot loop doesn't pay for logging and formatting.
+ *
+ * <p>This class is threadsafe.
+ */
+final class ValidationPipeline {
+  // One in SAMPLE_RATE bids is sampled for cost and rejection statistics.
+  static final int SAMPLE_RATE = 64;
+  // Rules are reordered after this many sampled bids.
+  static final int REORDER_SAMPLES = 64;
+
+  /**
+   * Receives a sample of the rejected bids.
+   */
+  @FunctionalInterface
+  interface DebugCapture {
+    void rejected(String rule, @Nullable SeatBidOrBuilder seat, Bid.Builder bid);
+  }
+
+  private final DebugCapture debugCapture;
+  private volatile Rule[] rules = new Rule[0];
+  private volatile Rule[] order = rules;
+  private volatile int debugSampleRate;
+  private final AtomicLong samples = new AtomicLong();
+
+  ValidationPipeline(DebugCapture debugCapture, int debugSampleRate) {
+    this.debugCapture = debugCapture;
+    setDebugSampleRate(debugSampleRate);
+  }
+
+  /**
+   * Sets the rate of rejections passed to the {@link DebugCapture}: one in {@code rate},
+   * or none if zero.
+   */
+  void setDebugSampleRate(int rate) {
+    checkArgument(rate >= 0, "Negative rate: %s", rate);
+    this.debugSampleRate = rate;
+  }
+
+  int getDebugSampleRate() {
+    return debugSampleRate;
+  }
+
+  synchronized void add(String name, BidValidationRule rule, RuleCounters rejected) {
+    add(name, rule, rejected, false);
+  }
+
+  /**
+   * Adds a rule.
+   *
+   * @param stop {@code true} if bids rejected by this rule are not validated by other rules,
+   *     even in collect-all mode
+   */
+  synchronized void add(
+      String name, BidValidationRule rule, RuleCounters rejected, boolean stop) {
+    for (Rule registered : rules) {
+      if (registered.name.equals(name)) {
+        throw new IllegalArgumentException("Duplicate rule: " + name);
+      }
+    }
+    Rule[] newRules = Arrays.copyOf(rules, rules.length + 1);
+    newRules[rules.length] = new Rule(name, rule, rejected, rules.length, stop);
+    rules = newRules;
+    order = newRules.clone();
+  }
+
+  boolean validate(PreparedRequest request, @Nullable SeatBidOrBuilder seat, Bid.Builder bid,
+      boolean rejectFirst) {
+    boolean sampled = ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0;
+    boolean goodBid = true;
+
+    for (Rule rule : rejectFirst ? order : rules) {
+      boolean passed;
+      if (sampled) {
+        long start = System.nanoTime();
+        passed = rule.rule.validate(request, seat, bid);
+        rule.nanos.add(System.nanoTime() - start);
+        rule.evaluations.increment();
+        if (!passed) {
+          rule.rejections.increment();
+        }
+      } else {
+        passed = rule.rule.validate(request, seat, bid);
+      }
+
+      if (!passed) {
+        rule.rejected.rejected(request, seat, bid);
+        int debugRate = debugSampleRate;
+        if (debugRate != 0 && (debugRate == 1
+            || ThreadLocalRandom.current().nextInt(debugRate) == 0)) {
+          debugCapture.rejected(rule.name, seat, bid);
+        }
+        goodBid = false;
+        if (rejectFirst || rule.stop) {
+          break;
+        }
+      }
+    }
+
+    if (sampled && rejectFirst && samples.incrementAndGet() % REORDER_SAMPLES == 0) {
+      reorder();
+    }
+    return goodBid;
+  }
+
+  /**
+   * Returns the names of the rules, in the order they're evaluated in reject-first mode.
+   */
+  String[] order() {
+    Rule[] currOrder = order;
+    String[] names = new String[currOrder.length];
+    for (int i = 0; i < names.length; ++i) {
+      names[i] = currOrder[i].name;
+    }
+    return names;
+  }
+
+  void reorder() {
+    Rule[] newOrder = rules.clone();
+    // Cheapest rules per rejection first; then rules without rejections, cheapest first;
+    // then rules without samples. Registration order breaks ties.
+    int[] tiers = new int[newOrder.length];
+    double[] scores = new double[newOrder.length];
+    for (Rule rule : newOrder) {
+      long evals = rule.evaluations.sum();
+      long rejects = rule.rejections.sum();
+      double cost = evals == 0 ? 0 : Math.max(1, rule.nanos.sum()) / (double) evals;
+      tiers[rule.index] = rejects != 0 ? 0 : evals != 0 ? 1 : 2;
+      scores[rule.index] = rejects != 0 ? cost * evals / rejects : cost;
+    }
+    Arrays.sort(newOrder, Comparator.<Rule>comparingInt(rule -> tiers[rule.index])
+        .thenComparingDouble(rule -> scores[rule.index])
+        .thenComparingInt(rule -> rule.index));
+    order = newOrder;
+  }
+
+  private static final class Rule {
+    final String name;
+    final BidValidationRule rule;
+    final RuleCounters rejected;
+    final int index;
+    final boolean stop;
+    final LongAdder evaluations = new LongAdder();
+    final LongAdder rejections = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+
+    Rule(String name, BidValidationRule rule, RuleCounters rejected, int index, boolean stop) {
+      this.name = name;
+      this.rule = rule;
+      this.rejected = rejected;
+      this.index = index;
+      this.stop = stop;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.openrtb.json.OpenRtbJsonFactoryHelper.newJsonFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Compares size and speed of text JSON with the Smile and CBOR binary formats, for the full
+ * request and response test documents. Not a unit test; run with {@code main()}.
+ */
+public class OpenRtbJsonBinaryBenchmark {
+  private static final int WARMUP = 20_000;
+  private static final int ITERATIONS = 100_000;
+
+  public static void main(String[] args) throws IOException {
+    OpenRtbJsonFactory text = newJsonFactory();
+    BidRequest req = text.newReader().readBidRequest(
+        OpenRtbJsonRequestHelper.REQUEST__FULL__NOROOT_OBJECT);
+    BidResponse resp = text.newReader().readBidResponse(
+        OpenRtbJsonResponseHelper.RESPONSE_FULL__NOROOT_OBJECT);
+
+    System.out.println("format  type      bytes  write(ns)   read(ns)");
+    for (JsonFactory jsonFactory : new JsonFactory[] {
+        new JsonFactory(), new SmileFactory(), new CBORFactory() }) {
+      OpenRtbJsonFactory factory = newJsonFactory().setJsonFactory(jsonFactory);
+      run(factory, "request", req);
+      run(factory, "response", resp);
+    }
+  }
+
+  private static void run(OpenRtbJsonFactory factory, String type, Object msg)
+      throws IOException {
+    OpenRtbJsonWriter writer = factory.newWriter();
+    OpenRtbJsonReader reader = factory.newReader();
+    byte[] bytes = write(writer, msg);
+
+    for (int i = 0; i < WARMUP; ++i) {
+      read(reader, msg, write(writer, msg));
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; ++i) {
+      write(writer, msg);
+    }
+    long writeNanos = (System.nanoTime() - start) / ITERATIONS;
+    start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; ++i) {
+      read(reader, msg, bytes);
+    }
+    long readNanos = (System.nanoTime() - start) / ITERATIONS;
+
+    System.out.println(String.format("%-7s %-8s %6d %10d %10d",
+        factory.getJsonFactory().getFormatName(), type, bytes.length, writeNanos, readNanos));
+  }
+
+  private static byte[] write(OpenRtbJsonWriter writer, Object msg) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    if (msg instanceof BidRequest) {
+      writer.writeBidRequest((BidRequest) msg, os);
+    } else {
+      writer.writeBidResponse((BidResponse) msg, os);
+    }
+    return os.toByteArray();
+  }
+
+  private static Object read(OpenRtbJsonReader reader, Object msg, byte[] bytes)
+      throws IOException {
+    return msg instanceof BidRequest
+        ? reader.readBidRequest(new ByteArrayInputStream(bytes))
+        : reader.readBidResponse(new ByteArrayInputStream(bytes));
+  }
+}
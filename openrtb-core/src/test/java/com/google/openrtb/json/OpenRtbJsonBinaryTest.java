@@ -0,0 +1,128 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.openrtb.json.OpenRtbJsonFactoryHelper.newJsonFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.protobuf.ByteString;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+
+/**
+ * Tests for binary formats with the JSON data model, used through {@link OpenRtbJsonFactory}.
+ */
+public class OpenRtbJsonBinaryTest {
+
+  @Test
+  public void testTextual() {
+    assertThat(newJsonFactory().isTextual()).isTrue();
+    assertThat(newJsonFactory().isForceNativeAsObject()).isFalse();
+    OpenRtbJsonFactory smile = newJsonFactory().setJsonFactory(new SmileFactory());
+    assertThat(smile.isTextual()).isFalse();
+    assertThat(smile.isForceNativeAsObject()).isTrue();
+    assertThat(smile.getTextJsonFactory().canHandleBinaryNatively()).isFalse();
+  }
+
+  @Test
+  public void testSmile() throws IOException {
+    testFormat(new SmileFactory());
+  }
+
+  @Test
+  public void testCbor() throws IOException {
+    testFormat(new CBORFactory());
+  }
+
+  @Test
+  public void testEmbeddedNativeString() throws IOException {
+    OpenRtbJsonFactory smile = newJsonFactory().setJsonFactory(new SmileFactory());
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    try (JsonGenerator gen = smile.getJsonFactory().createGenerator(os)) {
+      gen.writeStartObject();
+      gen.writeStringField("id", "1");
+      gen.writeArrayFieldStart("seatbid");
+      gen.writeStartObject();
+      gen.writeArrayFieldStart("bid");
+      gen.writeStartObject();
+      gen.writeStringField("id", "bid1");
+      gen.writeStringField("impid", "imp1");
+      gen.writeNumberField("price", 1.5);
+      gen.writeStringField("adm", "{\"link\":{\"url\":\"http://go.com\"}}");
+      gen.writeEndObject();
+      gen.writeEndArray();
+      gen.writeEndObject();
+      gen.writeEndArray();
+      gen.writeEndObject();
+    }
+
+    BidResponse resp =
+        smile.newReader().readBidResponse(new ByteArrayInputStream(os.toByteArray()));
+    assertThat(resp.getSeatbid(0).getBid(0).getAdmNative().getLink().getUrl())
+        .isEqualTo("http://go.com");
+  }
+
+  private static void testFormat(JsonFactory binaryFactory) throws IOException {
+    OpenRtbJsonFactory text = newJsonFactory();
+    OpenRtbJsonFactory binary = newJsonFactory().setJsonFactory(binaryFactory);
+
+    for (String json : new String[] {
+        OpenRtbJsonRequestHelper.REQUEST__FULL__NOROOT_STRING,
+        OpenRtbJsonRequestHelper.REQUEST__FULL__ROOT___OBJECT }) {
+      BidRequest req = text.newReader().readBidRequest(json);
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      binary.newWriter().writeBidRequest(req, os);
+      byte[] bytes = os.toByteArray();
+      assertThat(binary.newReader().readBidRequest(ByteString.copyFrom(bytes))).isEqualTo(req);
+      assertThat(nativeToken(binaryFactory, bytes, "request")).isEqualTo(JsonToken.START_OBJECT);
+    }
+
+    for (String json : new String[] {
+        OpenRtbJsonResponseHelper.RESPONSE_FULL__NOROOT_STRING,
+        OpenRtbJsonResponseHelper.RESPONSE_FULL__NOROOT_OBJECT }) {
+      BidResponse resp = text.newReader().readBidResponse(json);
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      binary.newWriter().writeBidResponse(resp, os);
+      byte[] bytes = os.toByteArray();
+      assertThat(binary.newReader().readBidResponse(new ByteArrayInputStream(bytes)))
+          .isEqualTo(resp);
+      assertThat(nativeToken(binaryFactory, bytes, "adm")).isEqualTo(JsonToken.START_OBJECT);
+    }
+  }
+
+  private static JsonToken nativeToken(JsonFactory factory, byte[] bytes, String fieldName)
+      throws IOException {
+    try (JsonParser par = factory.createParser(bytes)) {
+      for (JsonToken token = par.nextToken(); token != null; token = par.nextToken()) {
+        if (token == JsonToken.FIELD_NAME && fieldName.equals(par.getCurrentName())) {
+          return par.nextToken();
+        }
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.openrtb.json.OpenRtbJsonFactoryHelper.newJsonFactory;
+
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.NoBidReason;
+import com.google.openrtb.TestExt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OpenRtbJsonNoBidWriter}.
+ */
+public class OpenRtbJsonNoBidWriterTest {
+  private final OpenRtbJsonWriter writer = newJsonFactory().newWriter();
+
+  @Test
+  public void testNoBid() throws IOException {
+    OpenRtbJsonNoBidWriter noBidWriter = writer.newNoBidWriter();
+    assertThat(noBidWriter.writer()).isSameAs(writer);
+
+    for (String id : new String[] { "1", "", "quote\"d \\ ctrl\n", "unicode-é中" }) {
+      testNoBid(noBidWriter, BidResponse.newBuilder().setId(id).build());
+      for (NoBidReason nbr : NoBidReason.values()) {
+        testNoBid(noBidWriter, BidResponse.newBuilder().setId(id).setNbr(nbr).build());
+      }
+    }
+  }
+
+  @Test
+  public void testNotNoBid() throws IOException {
+    OpenRtbJsonNoBidWriter noBidWriter = writer.newNoBidWriter();
+    BidResponse resp = OpenRtbJsonTest.newBidResponse(false).build();
+    assertThat(noBidWriter.isNoBid(resp)).isFalse();
+    assertThat(noBidWriter.isNoContent(resp)).isFalse();
+    BidResponse bidid = BidResponse.newBuilder().setId("1").setBidid("2").build();
+    assertThat(noBidWriter.isNoBid(bidid)).isFalse();
+    BidResponse ext = BidResponse.newBuilder()
+        .setId("1").setExtension(TestExt.testResponse3, 5).build();
+    assertThat(noBidWriter.isNoBid(ext)).isFalse();
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    noBidWriter.writeBidResponse(resp, os);
+    assertThat(new String(os.toByteArray(), StandardCharsets.UTF_8))
+        .isEqualTo(writer.writeBidResponse(resp));
+  }
+
+  @Test
+  public void testNoContent() throws IOException {
+    OpenRtbJsonNoBidWriter noBidWriter = writer.newNoBidWriter();
+    assertThat(noBidWriter.isNoContent(BidResponse.newBuilder().setId("1").build())).isTrue();
+    assertThat(noBidWriter.isNoContent(BidResponse.newBuilder()
+        .setId("1").setNbr(NoBidReason.BLOCKED_PUBLISHER).build())).isFalse();
+  }
+
+  private void testNoBid(OpenRtbJsonNoBidWriter noBidWriter, BidResponse resp)
+      throws IOException {
+    String expected = writer.writeBidResponse(resp);
+    assertThat(noBidWriter.isNoBid(resp)).isTrue();
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    noBidWriter.writeBidResponse(resp, os);
+    assertThat(new String(os.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(expected);
+    byte[] json = noBidWriter.writeNoBid(resp.getId(), resp.hasNbr() ? resp.getNbr() : null);
+    assertThat(new String(json, StandardCharsets.UTF_8)).isEqualTo(expected);
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.openrtb.json.OpenRtbJsonFactoryHelper.newJsonFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OpenRtbJsonParallelWriter}.
+ */
+public class OpenRtbJsonParallelWriterTest {
+  private final OpenRtbJsonWriter writer = newJsonFactory().newWriter();
+  private final OpenRtbJsonParallelWriter parallelWriter =
+      writer.newParallelWriter(ForkJoinPool.commonPool());
+
+  @Test
+  public void testResponse() throws IOException {
+    assertThat(parallelWriter.writer()).isSameAs(writer);
+    assertThat(parallelWriter.pool()).isSameAs(ForkJoinPool.commonPool());
+
+    BidResponse.Builder resp = OpenRtbJsonTest.newBidResponse(false);
+    SeatBid seat = resp.getSeatbid(0);
+    for (int i = 0; i < 10; ++i) {
+      resp.addSeatbid(seat.toBuilder().setSeat("seat" + i));
+    }
+    testResponse(parallelWriter, resp.build());
+    testResponse(parallelWriter, BidResponse.newBuilder().setId("1").build());
+  }
+
+  @Test
+  public void testResponse_writerSubclass() throws IOException {
+    OpenRtbJsonWriter customWriter = new OpenRtbJsonWriter(newJsonFactory()) {
+      @Override protected void writeBidResponseTailFields(BidResponse resp, JsonGenerator gen)
+          throws IOException {
+        super.writeBidResponseTailFields(resp, gen);
+        gen.writeStringField("custom", resp.getId());
+      }
+    };
+    testResponse(
+        customWriter.newParallelWriter(ForkJoinPool.commonPool()),
+        OpenRtbJsonTest.newBidResponse(false).build());
+  }
+
+  @Test
+  public void testBatch() throws IOException {
+    List<BidRequest> reqs = new ArrayList<>();
+    List<BidResponse> resps = new ArrayList<>();
+    StringBuilder reqsJson = new StringBuilder();
+    StringBuilder respsJson = new StringBuilder();
+    for (int i = 0; i < 2500; ++i) {
+      BidRequest req = OpenRtbJsonTest.newBidRequest().setId("req" + i).build();
+      BidResponse resp = OpenRtbJsonTest.newBidResponse(false).setId("resp" + i).build();
+      reqs.add(req);
+      resps.add(resp);
+      reqsJson.append(writer.writeBidRequest(req)).append('\n');
+      respsJson.append(writer.writeBidResponse(resp)).append('\n');
+    }
+
+    Path path = Files.createTempFile("openrtb", ".json");
+    try {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+        parallelWriter.writeBidRequests(reqs, channel);
+      }
+      assertThat(read(path)).isEqualTo(reqsJson.toString());
+      try (FileChannel channel = FileChannel.open(
+          path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        parallelWriter.writeBidResponses(resps, channel);
+      }
+      assertThat(read(path)).isEqualTo(respsJson.toString());
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  private static void testResponse(OpenRtbJsonParallelWriter parallelWriter, BidResponse resp)
+      throws IOException {
+    Path path = Files.createTempFile("openrtb", ".json");
+    try {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+        long written = parallelWriter.writeBidResponse(resp, channel);
+        assertThat(written).isEqualTo(Files.size(path));
+      }
+      assertThat(read(path)).isEqualTo(parallelWriter.writer().writeBidResponse(resp));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  private static String read(Path path) throws IOException {
+    return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+  }
+}
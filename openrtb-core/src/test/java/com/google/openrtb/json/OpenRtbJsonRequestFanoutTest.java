@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.openrtb.json.OpenRtbJsonFactoryHelper.newJsonFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Device;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OpenRtbJsonRequestFanout}.
+ */
+public class OpenRtbJsonRequestFanoutTest {
+
+  @Test
+  public void testVariants() throws IOException {
+    OpenRtbJsonWriter writer = newJsonFactory().newWriter();
+    BidRequest base = OpenRtbJsonTest.newBidRequest().setSite(OpenRtbJsonTest.newSite()).build();
+    OpenRtbJsonRequestFanout fanout = writer.newRequestFanout(base);
+    assertThat(fanout.writer()).isSameAs(writer);
+    assertThat(fanout.base()).isSameAs(base);
+
+    assertThat(fanout.writeBidRequest(base)).isEqualTo(writer.writeBidRequest(base));
+
+    BidRequest impOverride = fanout.newVariant()
+        .setImp(0, base.getImp(0).toBuilder().setBidfloor(2.5))
+        .addImp(Imp.newBuilder().setId("imp2"))
+        .build();
+    assertThat(fanout.writeBidRequest(impOverride))
+        .isEqualTo(writer.writeBidRequest(impOverride));
+
+    BidRequest deviceOverride = fanout.newVariant()
+        .setDevice(Device.newBuilder().setIp("10.0.0.1"))
+        .clearUser()
+        .clearRegs()
+        .build();
+    assertThat(fanout.writeBidRequest(deviceOverride))
+        .isEqualTo(writer.writeBidRequest(deviceOverride));
+
+    BidRequest app = fanout.newVariant().setApp(OpenRtbJsonTest.newApp()).build();
+    assertThat(fanout.writeBidRequest(app)).isEqualTo(writer.writeBidRequest(app));
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    fanout.writeBidRequest(impOverride, os);
+    assertThat(new String(os.toByteArray(), StandardCharsets.UTF_8))
+        .isEqualTo(writer.writeBidRequest(impOverride));
+  }
+
+  @Test
+  public void testEmptyBase() throws IOException {
+    OpenRtbJsonWriter writer = OpenRtbJsonFactory.create().newWriter();
+    BidRequest base = BidRequest.newBuilder().setId("1").build();
+    OpenRtbJsonRequestFanout fanout = writer.newRequestFanout(base);
+    BidRequest variant = fanout.newVariant().setDevice(Device.newBuilder().setIp("1")).build();
+    assertThat(fanout.writeBidRequest(variant)).isEqualTo(writer.writeBidRequest(variant));
+  }
+
+  @Test
+  public void testWriterSubclass() throws IOException {
+    OpenRtbJsonWriter writer = new OpenRtbJsonWriter(newJsonFactory()) {
+      @Override protected void writeBidRequestFields(BidRequest req, JsonGenerator gen)
+          throws IOException {
+        super.writeBidRequestFields(req, gen);
+        gen.writeStringField("custom", req.getId());
+      }
+    };
+    BidRequest base = OpenRtbJsonTest.newBidRequest().setSite(OpenRtbJsonTest.newSite()).build();
+    OpenRtbJsonRequestFanout fanout = writer.newRequestFanout(base);
+    String json = fanout.writeBidRequest(base);
+    assertThat(json).contains("\"custom\":");
+    assertThat(json).isEqualTo(writer.writeBidRequest(base));
+  }
+}
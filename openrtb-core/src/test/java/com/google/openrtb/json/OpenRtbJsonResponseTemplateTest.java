@@ -0,0 +1,175 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.openrtb.json.OpenRtbJsonFactoryHelper.newJsonFactory;
+
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OpenRtbJsonResponseTemplate}.
+ */
+public class OpenRtbJsonResponseTemplateTest {
+  private static final String CLICK = "{{CLICK}}";
+
+  @Test
+  public void testInstance() throws IOException {
+    OpenRtbJsonWriter writer = newJsonFactory().newWriter();
+    OpenRtbJsonResponseTemplate template = writer.newResponseTemplate(prototype(), CLICK);
+    assertThat(template.writer()).isSameAs(writer);
+    assertThat(template.params()).containsExactly(CLICK);
+
+    OpenRtbJsonResponseTemplate.Instance instance = template.newInstance();
+    assertThat(instance.template()).isSameAs(template);
+    assertThat(json(instance)).isEqualTo(writer.writeBidResponse(prototype()));
+
+    instance
+        .setId("resp\"2")
+        .setBidid("bidid-2")
+        .setBidId(0, 1, "bid-ç2")
+        .setImpid(0, 1, "imp-2")
+        .setPrice(1, 0, 12.5)
+        .setParam(CLICK, "http://click?a=1&b=\"2\"");
+    BidResponse.Builder expected = prototype().toBuilder()
+        .setId("resp\"2")
+        .setBidid("bidid-2");
+    expected.getSeatbidBuilder(0).getBidBuilder(1).setId("bid-ç2").setImpid("imp-2");
+    expected.getSeatbidBuilder(1).getBidBuilder(0).setPrice(12.5);
+    for (Bid.Builder bid : expected.getSeatbidBuilder(0).getBidBuilderList()) {
+      bid.setAdm(bid.getAdm().replace(CLICK, "http://click?a=1&b=\"2\""));
+    }
+    assertThat(json(instance)).isEqualTo(writer.writeBidResponse(expected.build()));
+    assertThat(json(instance.reset())).isEqualTo(writer.writeBidResponse(prototype()));
+  }
+
+  @Test
+  public void testWriteBidResponse() throws IOException {
+    OpenRtbJsonWriter writer = newJsonFactory().newWriter();
+    OpenRtbJsonResponseTemplate template = writer.newResponseTemplate(prototype());
+
+    BidResponse sameShape = prototype().toBuilder()
+        .setId("resp2")
+        .setSeatbid(1, prototype().getSeatbid(1).toBuilder()
+            .setBid(0, prototype().getSeatbid(1).getBid(0).toBuilder()
+                .setId("x").setImpid("y").setPrice(0.01)))
+        .build();
+    assertThat(template.matches(sameShape)).isTrue();
+    assertThat(write(template, sameShape)).isEqualTo(writer.writeBidResponse(sameShape));
+    assertThat(write(template, prototype())).isEqualTo(writer.writeBidResponse(prototype()));
+
+    BidResponse otherShape = sameShape.toBuilder()
+        .setSeatbid(1, sameShape.getSeatbid(1).toBuilder()
+            .addBid(Bid.newBuilder().setId("bid4").setImpid("imp2").setPrice(4)))
+        .build();
+    assertThat(template.matches(otherShape)).isFalse();
+    assertThat(write(template, otherShape)).isEqualTo(writer.writeBidResponse(otherShape));
+
+    BidResponse otherCur = sameShape.toBuilder().setCur("EUR").build();
+    assertThat(template.matches(otherCur)).isFalse();
+    assertThat(write(template, otherCur)).isEqualTo(writer.writeBidResponse(otherCur));
+
+    BidResponse otherAdm = sameShape.toBuilder()
+        .setSeatbid(0, sameShape.getSeatbid(0).toBuilder()
+            .setBid(0, sameShape.getSeatbid(0).getBid(0).toBuilder().setAdm("other")))
+        .build();
+    assertThat(template.matches(otherAdm)).isFalse();
+    assertThat(write(template, otherAdm)).isEqualTo(writer.writeBidResponse(otherAdm));
+
+    BidResponse noBidid = sameShape.toBuilder().clearBidid().build();
+    assertThat(template.matches(noBidid)).isFalse();
+    assertThat(write(template, noBidid)).isEqualTo(writer.writeBidResponse(noBidid));
+  }
+
+  @Test
+  public void testParamOnlyInValues() throws IOException {
+    OpenRtbJsonWriter writer = newJsonFactory().newWriter();
+    // "nurl" is also a field name, which is not replaced.
+    OpenRtbJsonResponseTemplate template = writer.newResponseTemplate(prototype(), "nurl");
+    OpenRtbJsonResponseTemplate.Instance instance = template.newInstance()
+        .setParam("nurl", "x");
+    BidResponse.Builder expected = prototype().toBuilder();
+    expected.getSeatbidBuilder(1).getBidBuilder(0).setNurl("http://x");
+    assertThat(json(instance)).isEqualTo(writer.writeBidResponse(expected.build()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParamNotFound() throws IOException {
+    newJsonFactory().newWriter().newResponseTemplate(prototype(), "{{NOTFOUND}}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParamOnlyInSlot() throws IOException {
+    // Only in the ids and price of "bid3", which are slots.
+    newJsonFactory().newWriter().newResponseTemplate(prototype(), "3");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoBidid() throws IOException {
+    newJsonFactory().newWriter().newResponseTemplate(prototype().toBuilder().clearBidid().build())
+        .newInstance().setBidid("x");
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testBadBidIndex() throws IOException {
+    newJsonFactory().newWriter().newResponseTemplate(prototype())
+        .newInstance().setPrice(1, 1, 1.0);
+  }
+
+  private static BidResponse prototype() {
+    return BidResponse.newBuilder()
+        .setId("resp1")
+        .setBidid("bidid-1")
+        .setCur("USD")
+        .addSeatbid(SeatBid.newBuilder()
+            .setSeat("seat1")
+            .addBid(Bid.newBuilder()
+                .setId("bid1")
+                .setImpid("imp1")
+                .setPrice(1.5)
+                .setAdm("<a href=\"" + CLICK + "\">ad</a>"))
+            .addBid(Bid.newBuilder()
+                .setId("bid2")
+                .setImpid("imp1")
+                .setPrice(2.5)
+                .setAdm("<a href=\"" + CLICK + "\">ad</a>")))
+        .addSeatbid(SeatBid.newBuilder()
+            .addBid(Bid.newBuilder()
+                .setId("bid3")
+                .setImpid("imp2")
+                .setPrice(3)
+                .setNurl("http://nurl")))
+        .build();
+  }
+
+  private static String json(OpenRtbJsonResponseTemplate.Instance instance) {
+    return new String(instance.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static String write(OpenRtbJsonResponseTemplate template, BidResponse resp)
+      throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    template.writeBidResponse(resp, os);
+    return new String(os.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
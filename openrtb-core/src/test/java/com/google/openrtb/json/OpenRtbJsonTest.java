@@ -20,6 +20,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static com.google.openrtb.json.OpenRtbJsonFactoryHelper.newJsonFactory;
 import static java.util.Arrays.asList;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
@@ -77,7 +78,13 @@ import com.google.openrtb.Test.Test1;
 import com.google.openrtb.Test.Test2;
 import com.google.openrtb.TestExt;
 import com.google.openrtb.TestUtil;
+import com.google.openrtb.util.BidValidationRules;
+import com.google.openrtb.util.OpenRtbUtils;
+import com.google.openrtb.util.OpenRtbValidator;
+import com.google.openrtb.util.PreparedRequest;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -221,6 +228,84 @@ public class OpenRtbJsonTest {
         .isEqualTo(jsonResp);
   }
 
+  @Test
+  public void testResponse_bidFilter() throws IOException {
+    MetricRegistry metricRegistry = new MetricRegistry();
+    OpenRtbValidator validator = new OpenRtbValidator(metricRegistry);
+    PreparedRequest request = validator.prepare(BidRequest.newBuilder()
+        .setId("1")
+        .addBadv("adv1.com")
+        .addImp(Imp.newBuilder().setId("1").setBanner(Banner.newBuilder()))
+        .build());
+    OpenRtbJsonBidFilter validating = OpenRtbJsonBidFilter.validating(validator, request, true);
+    List<String> skipped = new ArrayList<>();
+    OpenRtbJsonBidFilter filter = new OpenRtbJsonBidFilter() {
+      @Override public boolean accept(SeatBid.Builder seatbid, Bid.Builder bid) {
+        return validating.accept(seatbid, bid);
+      }
+
+      @Override public boolean readMarkup(Bid.Builder bid) {
+        boolean read = validating.readMarkup(bid);
+        if (!read) {
+          skipped.add(bid.getId());
+        }
+        return read;
+      }
+
+      @Override public void rejectedEarly(SeatBid.Builder seatbid, Bid.Builder bid) {
+        validating.rejectedEarly(seatbid, bid);
+      }
+    };
+    String json = "{\"id\":\"1\",\"seatbid\":[{\"bid\":["
+        + "{\"id\":\"1\",\"impid\":\"1\",\"price\":1,\"adm\":\"good\"},"
+        + "{\"id\":\"2\",\"price\":1,\"impid\":\"1\",\"adomain\":[\"adv1.com\"],\"adm\":\"bad\"},"
+        + "{\"id\":\"3\",\"price\":1,\"impid\":\"9\",\"adm\":\"bad\"},"
+        + "{\"id\":\"4\",\"price\":1,\"adm\":\"bad\",\"impid\":\"1\",\"adomain\":[\"x.adv1.com\"]}"
+        + "],\"seat\":\"seat1\"}]}";
+
+    OpenRtbJsonReader reader = newJsonFactory().newReader();
+    assertThat(reader.getBidFilter()).isNull();
+    assertThat(OpenRtbUtils.bids(reader.readBidResponse(json).toBuilder())).hasSize(4);
+
+    BidResponse resp = reader.withBidFilter(filter).readBidResponse(json);
+    assertThat(resp.getSeatbid(0).getSeat()).isEqualTo("seat1");
+    assertThat(resp.getSeatbid(0).getBidList()).containsExactly(
+        Bid.newBuilder().setId("1").setImpid("1").setPrice(1).setAdm("good").build());
+    assertThat(skipped).containsExactly("2", "3").inOrder();
+    // Bids skipped early are counted like the others.
+    assertThat(metricRegistry.counter(
+        MetricRegistry.name(OpenRtbValidator.class, "invalid-advertiser")).getCount())
+        .isEqualTo(2);
+    assertThat(metricRegistry.counter(
+        MetricRegistry.name(OpenRtbValidator.class, "unmatched-imp")).getCount())
+        .isEqualTo(1);
+    assertThat(metricRegistry.counter(MetricRegistry.name(
+        OpenRtbValidator.class, "unmatched-imp", "other-seat", "unknown")).getCount())
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void testResponse_bidFilterSeatAfterBids() throws IOException {
+    OpenRtbValidator validator = new OpenRtbValidator(new MetricRegistry())
+        .addRule("invalid-seat", BidValidationRules.seats());
+    PreparedRequest request = validator.prepare(BidRequest.newBuilder()
+        .setId("1")
+        .addBseat("seat2")
+        .addImp(Imp.newBuilder().setId("1").setBanner(Banner.newBuilder()))
+        .build());
+    String json = "{\"id\":\"1\",\"seatbid\":["
+        + "{\"bid\":[{\"id\":\"1\",\"impid\":\"1\",\"price\":1}],\"seat\":\"seat1\"},"
+        + "{\"bid\":[{\"id\":\"2\",\"impid\":\"1\",\"price\":1}],\"seat\":\"seat2\"}]}";
+
+    BidResponse resp = newJsonFactory().newReader()
+        .withBidFilter(OpenRtbJsonBidFilter.validating(validator, request, false))
+        .readBidResponse(json);
+    assertThat(resp.getSeatbid(0).getBidList()).containsExactly(
+        Bid.newBuilder().setId("1").setImpid("1").setPrice(1).build());
+    assertThat(resp.getSeatbid(1).getSeat()).isEqualTo("seat2");
+    assertThat(resp.getSeatbid(1).getBidList()).isEmpty();
+  }
+
   @Test
   public void testRequestWithNative() throws IOException {
     testRequestWithNative(OpenRtbJsonRequestHelper.REQUEST__SHORT_NOROOT_STRING, false, false);
@@ -18,6 +18,7 @@ package com.google.openrtb.snippet;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.common.collect.ImmutableList;
 import com.google.openrtb.OpenRtb.BidRequest;
 import com.google.openrtb.OpenRtb.BidRequest.Imp;
 import com.google.openrtb.OpenRtb.BidRequest.Imp.Banner;
@@ -25,6 +26,12 @@ import com.google.openrtb.OpenRtb.BidResponse;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
 import com.google.openrtb.TestUtil;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 
 /**
@@ -104,6 +111,216 @@ public class OpenRtbSnippetProcessorTest {
     assertThat(bid.getNurl()).isEqualTo("http://nurl?id=${AUCTION_IMP_ID}");
   }
 
+  @Test
+  public void testManySeats() {
+    BidRequest.Builder req = BidRequest.newBuilder().setId("req1");
+    BidResponse.Builder resp = BidResponse.newBuilder();
+    for (int i = 0; i < 5; ++i) {
+      req.addImp(Imp.newBuilder().setId("imp" + i).setBanner(Banner.newBuilder()));
+      SeatBid.Builder seat = SeatBid.newBuilder().setSeat("seat" + i);
+      for (int j = 0; j < 5; ++j) {
+        seat.addBid(Bid.newBuilder()
+            .setId("bid" + i + j)
+            .setImpid("imp" + j)
+            .setPrice(10000)
+            .setAdm(OpenRtbMacros.AUCTION_SEAT_ID.key() + "/"
+                + OpenRtbMacros.AUCTION_IMP_ID.key()));
+      }
+      resp.addSeatbid(seat);
+    }
+
+    new OpenRtbSnippetProcessor().process(new SnippetProcessorContext(req.build(), resp));
+    for (int i = 0; i < 5; ++i) {
+      for (int j = 0; j < 5; ++j) {
+        assertThat(resp.getSeatbid(i).getBid(j).getAdm()).isEqualTo("seat" + i + "/imp" + j);
+      }
+    }
+  }
+
+  @Test
+  public void testMacroProviders() {
+    Map<SnippetMacroScope, AtomicInteger> calls = new EnumMap<>(SnippetMacroScope.class);
+    List<SnippetMacroType> providers = new ArrayList<>();
+    for (SnippetMacroScope scope : SnippetMacroScope.values()) {
+      calls.put(scope, new AtomicInteger());
+      providers.add(SnippetMacroProvider.of("${" + scope + "}", scope, ctx -> {
+        calls.get(scope).incrementAndGet();
+        return scope == SnippetMacroScope.REQUEST ? "req/${AUCTION_ID}"
+            : scope == SnippetMacroScope.IMP ? ctx.getBid().getImpid()
+            : scope == SnippetMacroScope.SEAT ? "${AUCTION_SEAT_ID}"
+            : ctx.getBid().getId();
+      }));
+    }
+    OpenRtbSnippetProcessor processor = new OpenRtbSnippetProcessor(false, true) {
+      @Override protected List<SnippetMacroType> registerMacros() {
+        return ImmutableList.<SnippetMacroType>builder()
+            .addAll(super.registerMacros()).addAll(providers).build();
+      }
+    };
+
+    BidRequest.Builder req = BidRequest.newBuilder().setId("req1");
+    BidResponse.Builder resp = BidResponse.newBuilder();
+    for (int i = 0; i < 3; ++i) {
+      req.addImp(Imp.newBuilder().setId("imp" + i).setBanner(Banner.newBuilder()));
+      SeatBid.Builder seat = SeatBid.newBuilder().setSeat("seat" + i);
+      for (int j = 0; j < 3; ++j) {
+        seat.addBid(Bid.newBuilder()
+            .setId("bid" + i + j)
+            .setImpid("imp" + j)
+            .setPrice(10000)
+            .setAdm("${REQUEST}|${IMP}|${SEAT}|${BID}|%{${REQUEST}|${BID}}%|${REQUEST}"));
+      }
+      resp.addSeatbid(seat);
+    }
+
+    processor.process(new SnippetProcessorContext(req.build(), resp));
+    for (int i = 0; i < 3; ++i) {
+      for (int j = 0; j < 3; ++j) {
+        assertThat(resp.getSeatbid(i).getBid(j).getAdm()).isEqualTo(
+            "req/req1|imp" + j + "|seat" + i + "|bid" + i + j + "|req%2Freq1%7Cbid" + i + j
+            + "|req/req1");
+      }
+    }
+    assertThat(calls.get(SnippetMacroScope.REQUEST).get()).isEqualTo(1);
+    assertThat(calls.get(SnippetMacroScope.IMP).get()).isEqualTo(3);
+    assertThat(calls.get(SnippetMacroScope.SEAT).get()).isEqualTo(3);
+    assertThat(calls.get(SnippetMacroScope.BID).get()).isEqualTo(9);
+  }
+
+  @Test
+  public void testNestedMacroScopes() {
+    AtomicInteger calls = new AtomicInteger();
+    // Request-scoped macros whose values contain narrower macros are memoized per bid.
+    SnippetMacroProvider wrap = SnippetMacroProvider.of("${WRAP}", SnippetMacroScope.REQUEST,
+        ctx -> {
+          calls.incrementAndGet();
+          return "${AUCTION_ID}/${AUCTION_IMP_ID}/${AUCTION_AD_ID}";
+        });
+    OpenRtbSnippetProcessor processor = new OpenRtbSnippetProcessor(false, true) {
+      @Override protected List<SnippetMacroType> registerMacros() {
+        return ImmutableList.<SnippetMacroType>builder()
+            .addAll(super.registerMacros()).add(wrap).build();
+      }
+    };
+
+    BidRequest.Builder req = BidRequest.newBuilder().setId("req1")
+        .addImp(Imp.newBuilder().setId("imp1").setBanner(Banner.newBuilder()))
+        .addImp(Imp.newBuilder().setId("imp2").setBanner(Banner.newBuilder()));
+    SeatBid.Builder seat = SeatBid.newBuilder();
+    for (int i = 1; i <= 2; ++i) {
+      seat.addBid(Bid.newBuilder()
+          .setId("bid" + i).setImpid("imp" + i).setAdid("ad" + i).setPrice(1)
+          .setAdm("${WRAP}|%{${WRAP}}%|${WRAP}"));
+    }
+    BidResponse.Builder resp = BidResponse.newBuilder().addSeatbid(seat);
+
+    processor.process(new SnippetProcessorContext(req.build(), resp));
+    for (int i = 1; i <= 2; ++i) {
+      String value = "req1/imp" + i + "/ad" + i;
+      assertThat(resp.getSeatbid(0).getBid(i - 1).getAdm())
+          .isEqualTo(value + "|" + SnippetProcessor.getEscaper().escape(value) + "|" + value);
+    }
+    assertThat(calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testSubclassNotMemoized() {
+    // Subclasses that don't opt in see processMacroAt() for every occurrence.
+    OpenRtbSnippetProcessor processor = new OpenRtbSnippetProcessor() {
+      @Override protected boolean processMacroAt(
+          SnippetProcessorContext ctx, SnippetMacroType macroDef) {
+        if (macroDef == OpenRtbMacros.AUCTION_ID) {
+          ctx.builder().append(ctx.getBid().getId());
+          return true;
+        }
+        return super.processMacroAt(ctx, macroDef);
+      }
+    };
+    BidRequest.Builder req = BidRequest.newBuilder().setId("req1")
+        .addImp(Imp.newBuilder().setId("imp1").setBanner(Banner.newBuilder()));
+    SeatBid.Builder seat = SeatBid.newBuilder();
+    for (int i = 1; i <= 2; ++i) {
+      seat.addBid(Bid.newBuilder()
+          .setId("bid" + i).setImpid("imp1").setPrice(1).setAdm("${AUCTION_ID}"));
+    }
+    BidResponse.Builder resp = BidResponse.newBuilder().addSeatbid(seat);
+
+    processor.process(new SnippetProcessorContext(req.build(), resp));
+    assertThat(resp.getSeatbid(0).getBid(0).getAdm()).isEqualTo("bid1");
+    assertThat(resp.getSeatbid(0).getBid(1).getAdm()).isEqualTo("bid2");
+  }
+
+  @Test
+  public void testParallel() {
+    BidRequest.Builder req = BidRequest.newBuilder().setId("req1").addCur("USD");
+    BidResponse.Builder resp = BidResponse.newBuilder().setId("1").setBidid("resp1");
+    for (int i = 0; i < 4; ++i) {
+      req.addImp(Imp.newBuilder().setId("imp" + i).setBanner(Banner.newBuilder()));
+    }
+    for (int i = 0; i < 5; ++i) {
+      SeatBid.Builder seat = SeatBid.newBuilder().setSeat("seat" + i);
+      for (int j = 0; j < 12; ++j) {
+        seat.addBid(Bid.newBuilder()
+            .setId("bid-" + OpenRtbMacros.AUCTION_AD_ID.key())
+            .setAdid("ad" + i + j)
+            .setImpid("imp" + (j % 4))
+            .setPrice(10000)
+            .setAdm("%{%{http://x.com/?s=${AUCTION_SEAT_ID}&i=${AUCTION_IMP_ID}"
+                + "&a=${AUCTION_AD_ID}&r=${AUCTION_ID}&c=${AUCTION_CURRENCY}}%}%")
+            .setNurl("${AUCTION_BID_ID}/${AUCTION_PRICE}"));
+      }
+      resp.addSeatbid(seat);
+    }
+
+    OpenRtbSnippetProcessor processor = new OpenRtbSnippetProcessor(true);
+    BidResponse.Builder sequential = resp.clone();
+    processor.process(new SnippetProcessorContext(req.build(), sequential));
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      SnippetProcessorContext ctx = new SnippetProcessorContext(req.build(), resp);
+      processor.process(ctx, pool);
+      assertThat(resp.build()).isEqualTo(sequential.build());
+      assertThat(resp.getSeatbid(4).getBid(11).getId()).isEqualTo("bid-ad411");
+      assertThat(ctx.getMacroValue(OpenRtbMacros.AUCTION_ID, 0)).isEqualTo("req1");
+
+      // Small responses are processed sequentially.
+      BidResponse.Builder small = BidResponse.newBuilder().addSeatbid(resp.getSeatbid(0)
+          .toBuilder().clearBid().addBid(Bid.newBuilder(resp.getSeatbid(0).getBid(0))
+              .setAdm("${AUCTION_ID}")));
+      processor.process(new SnippetProcessorContext(req.build(), small), pool);
+      assertThat(small.getSeatbid(0).getBid(0).getAdm()).isEqualTo("req1");
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testContextIndexes() {
+    BidRequest.Builder req = BidRequest.newBuilder().setId("req1")
+        .addImp(Imp.newBuilder().setId("imp1"));
+    BidResponse.Builder resp = BidResponse.newBuilder()
+        .addSeatbid(SeatBid.newBuilder().setSeat("seat1"));
+    SnippetProcessorContext ctx = new SnippetProcessorContext(req, resp);
+    Bid.Builder bid = Bid.newBuilder().setId("bid1").setImpid("imp1").setPrice(1);
+    ctx.setBid(bid);
+    assertThat(ctx.findImp("imp1").getId()).isEqualTo("imp1");
+    assertThat(ctx.findImp("imp2")).isNull();
+    assertThat(ctx.findSeat()).isNull();
+
+    // Indexes are rebuilt after changes, but only once for each bid.
+    req.addImp(Imp.newBuilder().setId("imp2"));
+    assertThat(ctx.findImp("imp2")).isNull();
+    resp.getSeatbidBuilder(0).addBid(bid);
+    ctx.setBid(resp.getSeatbidBuilder(0).getBidBuilder(0));
+    assertThat(ctx.findImp("imp2").getId()).isEqualTo("imp2");
+    assertThat(ctx.findSeat()).isSameAs(resp.getSeatbidBuilder(0));
+    assertThat(ctx.rec().findSeat()).isSameAs(resp.getSeatbidBuilder(0));
+
+    SeatBid.Builder otherSeat = SeatBid.newBuilder().setSeat("seat2");
+    ctx.setBid(otherSeat, bid);
+    assertThat(ctx.findSeat()).isSameAs(otherSeat);
+  }
+
   @Test
   public void testNoData() {
     BidRequest request = BidRequest.newBuilder()
@@ -19,14 +19,22 @@ package com.google.openrtb.snippet;
 import static com.google.common.truth.Truth.assertThat;
 import static java.util.Arrays.asList;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.escape.Escaper;
+import com.google.common.net.PercentEscaper;
 import com.google.openrtb.OpenRtb.BidRequest;
 import com.google.openrtb.OpenRtb.BidRequest.Imp;
 import com.google.openrtb.OpenRtb.BidResponse;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
 import com.google.openrtb.TestUtil;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Test;
 
@@ -34,6 +42,7 @@ import org.junit.Test;
  * Tests for {@link SnippetProcessor}.
  */
 public class SnippetProcessorTest {
+  private static final Escaper GUAVA_ESCAPER = new PercentEscaper("-_.*", true);
   private static BidRequest req = BidRequest.newBuilder()
       .setId("1")
       .build();
@@ -68,6 +77,18 @@ public class SnippetProcessorTest {
           case MACRO_REC:
             ctx.builder().append(TestMacros.MACRO_REC.key());
             return true;
+
+          case MACRO_MARKER:
+            ctx.builder().append("%{").append(TestMacros.TEST.key()).append("}%");
+            return true;
+
+          case CYCLE_A:
+            ctx.builder().append(TestMacros.CYCLE_B.key());
+            return true;
+
+          case CYCLE_B:
+            ctx.builder().append("x").append(TestMacros.CYCLE_A.key());
+            return true;
         }
       }
 
@@ -118,6 +139,45 @@ public class SnippetProcessorTest {
         .isEqualTo(esc2(esc2(esc2(esc2(esc2("!"))))));
   }
 
+  @Test
+  public void testUrlEncodingChars() {
+    String text = "a Z09-_.*~!'()+,/:;=?@[]{}\"<>#%&$ \t\u00e9\u00ff\u4e2d\ud83d\ude00";
+    assertThat(process("%{" + text + "}%")).isEqualTo(esc(text));
+    assertThat(process("%{%{" + text + "}%}%")).isEqualTo(esc2(text));
+    assertThat(process("%{%{%{" + text + "}%}%}%")).isEqualTo(esc(esc2(text)));
+    assertThat(process("%{x}%" + text)).isEqualTo("x" + text);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUrlEncodingBadSurrogate() {
+    process("%{\ud83d}%");
+  }
+
+  @Test
+  public void testUrlEncodingTables() {
+    StringBuilder text = new StringBuilder();
+    for (char c = 0; c < 0x3000; ++c) {
+      text.append(c);
+    }
+    text.append("\uffff\ud83d\ude00\udbff\udfff");
+    String expected = text.toString();
+    assertThat(SnippetProcessor.getEscaper().escape(expected)).isEqualTo(esc(expected));
+    assertThat(SnippetProcessor.getEscaper().escape("a-Z")).isSameAs("a-Z");
+
+    for (int level = 0; level <= PercentEncoding.TABLE_LEVELS + 2; ++level) {
+      StringBuilder sb = new StringBuilder("x");
+      PercentEncoding.encode(text, 0, text.length(), level, sb);
+      assertThat(sb.toString()).isEqualTo("x" + expected);
+      if (level <= 3) {
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length() * 3);
+        PercentEncoding.encode(text, 0, text.length(), level, buffer);
+        assertThat(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8))
+            .isEqualTo(expected);
+      }
+      expected = esc(expected);
+    }
+  }
+
   @Test
   public void testUrlEncodingBad() {
     assertThat(process("bad!}%")).isEqualTo("bad!}%");
@@ -125,6 +185,27 @@ public class SnippetProcessorTest {
     assertThat(process("bad!%{")).isEqualTo("bad!");
     assertThat(process("%{bad!")).isEqualTo("bad!");
     assertThat(process("%{good!}%{bad!}%")).isEqualTo(esc("good!") + "{bad!}%");
+    assertThat(process("%{a}%%{b " + TestMacros.TEST.key() + "!"))
+        .isEqualTo("a" + "b #!");
+    assertThat(process("%{%{x}%y \u00e9 " + TestMacros.TEST.key() + "+%"))
+        .isEqualTo(esc("x") + "y \u00e9 #+%");
+
+    // The unencoded tail is not processed again, so its macros are expanded only once.
+    int[] calls = new int[1];
+    SnippetProcessor countProcessor = new SnippetProcessor() {
+      @Override protected List<SnippetMacroType> registerMacros() {
+        return asList(TestMacros.TEST);
+      }
+
+      @Override protected boolean processMacroAt(
+          SnippetProcessorContext ctx, SnippetMacroType macroDef) {
+        ctx.builder().append(++calls[0]);
+        return true;
+      }
+    };
+    assertThat(countProcessor.process(newContext(""), "%{a}%%{b " + TestMacros.TEST.key()))
+        .isEqualTo("ab 1");
+    assertThat(calls[0]).isEqualTo(1);
   }
 
   @Test
@@ -136,13 +217,185 @@ public class SnippetProcessorTest {
     assertThat(process("%{" + TestMacros.TEST.key() + "}%")).isEqualTo(esc("#"));
     assertThat(process(TestMacros.MACRO_NREC.key())).isEqualTo("#");
     assertThat(process(TestMacros.MACRO_REC.key())).isEqualTo(TestMacros.MACRO_REC.key());
+    // Values of recursive macros, like plain values, are not scanned for encoding markers.
+    assertThat(process(TestMacros.MACRO_MARKER.key())).isEqualTo("%{#}%");
+    assertThat(process("%{a " + TestMacros.MACRO_NREC.key() + "%{b}%}%"))
+        .isEqualTo(esc("a #") + esc2("b"));
+    assertThat(process("${UNKNOWN_MACRO}" + TestMacros.TEST.key())).isEqualTo("${UNKNOWN_MACRO}#");
+  }
+
+  @Test
+  public void testRecursiveMacros() {
+    assertThat(process(TestMacros.CYCLE_A.key())).isEqualTo("x" + TestMacros.CYCLE_A.key());
+    assertThat(process("%{" + TestMacros.CYCLE_B.key() + "}%"))
+        .isEqualTo(esc("x" + TestMacros.CYCLE_B.key()));
+
+    List<SnippetMacroType> chain = new ArrayList<>();
+    for (int i = 0; i < SnippetProcessor.MAX_RECURSION_DEPTH + 4; ++i) {
+      String key = "${CHAIN" + i + "}";
+      chain.add(() -> key);
+    }
+    SnippetProcessor chainProcessor = new SnippetProcessor() {
+      @Override protected List<SnippetMacroType> registerMacros() {
+        return chain;
+      }
+
+      @Override protected boolean processMacroAt(
+          SnippetProcessorContext ctx, SnippetMacroType macroDef) {
+        int next = chain.indexOf(macroDef) + 1;
+        ctx.builder().append(next).append(next == chain.size() ? "" : chain.get(next).key());
+        return true;
+      }
+    };
+    SnippetProcessorContext ctx = newContext("");
+    assertThat(chainProcessor.process(ctx, chain.get(chain.size() - 3).key()))
+        .isEqualTo((chain.size() - 2) + "" + (chain.size() - 1) + "" + chain.size());
+    String tooDeep = chainProcessor.process(ctx, chain.get(0).key());
+    assertThat(tooDeep).endsWith(SnippetProcessor.MAX_RECURSION_DEPTH + "${CHAIN"
+        + SnippetProcessor.MAX_RECURSION_DEPTH + "}");
+    assertThat(ctx.depth()).isEqualTo(0);
   }
 
+  @Test
+  public void testMemoization() {
+    int[] calls = new int[1];
+    SnippetMacroType reqMacro = () -> "${REQ}";
+    SnippetMacroType bidMacro = () -> "${BID}";
+    SnippetProcessor memoProcessor = new SnippetProcessor() {
+      @Override protected List<SnippetMacroType> registerMacros() {
+        return asList(reqMacro, bidMacro);
+      }
+
+      @Override protected boolean processMacroAt(
+          SnippetProcessorContext ctx, SnippetMacroType macroDef) {
+        ++calls[0];
+        ctx.builder().append(macroDef == reqMacro ? "a b/" : ctx.getBid().getId());
+        return true;
+      }
+
+      @Override protected SnippetMacroScope macroScope(SnippetMacroType macroDef) {
+        return macroDef == reqMacro ? SnippetMacroScope.REQUEST : SnippetMacroScope.BID;
+      }
+    };
+    SnippetProcessorContext ctx = newContext("");
+    String snippet = "${REQ}%{${REQ}%{${REQ}%{${REQ}%{${REQ}}%}%}%}%${BID}";
+    String expected = "a b/" + esc("a b/" + esc("a b/" + esc("a b/" + esc("a b/")))) + "bid1";
+    assertThat(memoProcessor.process(ctx, snippet)).isEqualTo(expected);
+    assertThat(calls[0]).isEqualTo(2);
+    assertThat(ctx.getMacroValue(reqMacro, 3)).isEqualTo(esc(esc(esc("a b/"))));
+    assertThat(memoProcessor.process(ctx, memoProcessor.compile(snippet))).isEqualTo(expected);
+    assertThat(calls[0]).isEqualTo(2);
+
+    ctx.setBid(Bid.newBuilder().setId("2"));
+    assertThat(ctx.getMacroValue(bidMacro, 0)).isNull();
+    assertThat(memoProcessor.process(ctx, "${REQ}${BID}")).isEqualTo("a b/2");
+    assertThat(calls[0]).isEqualTo(3);
+
+    // Custom processors can memoize their own values.
+    ctx.putMacroValue(SnippetMacroScope.BID, bidMacro, 1, "%33");
+    assertThat(memoProcessor.process(ctx, "%{${BID}}%")).isEqualTo("%33");
+  }
+
+  @Test
+  public void testMacroMatching() {
+    SnippetProcessor prefixProcessor = new SnippetProcessor() {
+      @Override protected List<SnippetMacroType> registerMacros() {
+        return asList(PrefixMacros.values());
+      }
+
+      @Override protected boolean processMacroAt(
+          SnippetProcessorContext ctx, SnippetMacroType macroDef) {
+        ctx.builder().append(((PrefixMacros) macroDef).name());
+        return true;
+      }
+    };
+    SnippetProcessorContext ctx = newContext("");
+    // Keys that are prefixes of other keys win, and so does the first of duplicate keys.
+    assertThat(prefixProcessor.process(ctx, "${A}B")).isEqualTo("AB");
+    assertThat(prefixProcessor.process(ctx, "${AB}")).isEqualTo("${AB}");
+    assertThat(prefixProcessor.process(ctx, "x${B}y${")).isEqualTo("xBy${");
+    assertThat(prefixProcessor.process(ctx, "${${A}${B")).isEqualTo("${A${B");
+  }
+
+  @Test
+  public void testOutputs() throws IOException {
+    for (String snippet : SNIPPETS) {
+      String expected = process(snippet);
+      SnippetTemplate template = processor.template(snippet);
+      StringBuilder sb = new StringBuilder("x");
+      processor.process(newContext(snippet), snippet, sb);
+      processor.process(newContext(snippet), template, sb);
+      assertThat(sb.toString()).isEqualTo("x" + expected + expected);
+
+      StringWriter writer = new StringWriter();
+      processor.process(newContext(snippet), snippet, writer);
+      processor.process(newContext(snippet), template, writer);
+      assertThat(writer.toString()).isEqualTo(expected + expected);
+
+      ByteBuffer buffer = ByteBuffer.allocate(4096);
+      processor.process(newContext(snippet), snippet, buffer);
+      processor.process(newContext(snippet), template, buffer);
+      assertThat(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8))
+          .isEqualTo(expected + expected);
+    }
+
+    String large = Strings.repeat("%{" + TestMacros.TEST.key() + " \u00e9}%", 1000);
+    StringWriter writer = new StringWriter();
+    processor.process(newContext(large), large, writer);
+    assertThat(writer.toString()).isEqualTo(process(large));
+
+    String snippet = "%{" + TestMacros.TEST.key() + "}%";
+    ByteBuffer buffer = ByteBuffer.allocate(100);
+    SnippetProcessor.NULL.process(newContext(snippet), snippet, buffer);
+    SnippetProcessor.NULL.process(newContext(snippet), processor.compile(snippet), buffer);
+    assertThat(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8))
+        .isEqualTo(snippet + snippet);
+  }
+
+  @Test
+  public void testTemplate() {
+    for (String snippet : SNIPPETS) {
+      SnippetTemplate template = processor.template(snippet);
+      assertThat(template.snippet()).isSameAs(snippet);
+      assertThat(processTemplate(template)).isEqualTo(process(snippet));
+    }
+
+    SnippetTemplate template = processor.template("%{" + TestMacros.TEST.key() + "}%");
+    assertThat(template.isConstant()).isFalse();
+    assertThat(processor.template(template.snippet())).isSameAs(template);
+    assertThat(processor.template("creative1", "a%{b}%").isConstant()).isTrue();
+    assertThat(processor.template("creative1", "ignored").snippet()).isEqualTo("a%{b}%");
+    assertThat(SnippetProcessor.NULL.process(newContext("x"), template))
+        .isSameAs(template.snippet());
+  }
+
+  private static final String[] SNIPPETS = {
+      "", "{!+/}", "%!+/%", "%{aaa}%", "%{!+/}%%{aaa}%", "%{%{!+/}%aaa}%",
+      "%{%{%{%{%{%{%{%{%{%{!}%}%}%}%}%}%}%}%}%}%",
+      "bad!}%", "bad!}%%{+}%", "bad!%{", "%{bad!", "%{good!}%{bad!}%",
+      "${UNKNOWN_MACRO}", TestMacros.TEST.key(), "%{" + TestMacros.TEST.key() + "}%",
+      "a%{b" + TestMacros.TEST.key() + "%{c" + TestMacros.MACRO_NREC.key() + "}%}%d",
+      "%{x}%${" + TestMacros.TEST.key() + "%{y" + TestMacros.TEST.key(),
+      "\u00e9 %{\u4e2d \ud83d\ude00}% \ud83d\ude00",
+      TestMacros.MACRO_NREC.key(), TestMacros.MACRO_REC.key() };
+
   private String process(String snippet) {
     return process(snippet, true);
   }
 
   private String process(String snippet, boolean full) {
+    return processor.process(newContext(snippet, full), snippet);
+  }
+
+  private String processTemplate(SnippetTemplate template) {
+    return processor.process(newContext(template.snippet()), template);
+  }
+
+  private static SnippetProcessorContext newContext(String snippet) {
+    return newContext(snippet, true);
+  }
+
+  private static SnippetProcessorContext newContext(String snippet, boolean full) {
     BidRequest request = BidRequest.newBuilder()
         .setId("1")
         .addImp(Imp.newBuilder()
@@ -150,7 +403,7 @@ public class SnippetProcessorTest {
     BidResponse.Builder response = createBidResponse(snippet, full);
     SnippetProcessorContext ctx = new SnippetProcessorContext(request, response);
     ctx.setBid(response.getSeatbidBuilder(0).getBidBuilder(0));
-    return processor.process(ctx, snippet);
+    return ctx;
   }
 
   private static BidResponse.Builder createBidResponse(String snippet, boolean full) {
@@ -172,17 +425,37 @@ public class SnippetProcessorTest {
   }
 
   private static String esc(String s) {
-    return SnippetProcessor.getEscaper().escape(s);
+    return GUAVA_ESCAPER.escape(s);
   }
 
   private static String esc2(String s) {
     return esc(esc(s));
   }
 
+  static enum PrefixMacros implements SnippetMacroType {
+    A_LONG("${A}B"),
+    A("${A}"),
+    A_DUP("${A}"),
+    B("${B}");
+
+    private final String key;
+
+    private PrefixMacros(String key) {
+      this.key = key;
+    }
+
+    @Override public final String key() {
+      return key;
+    }
+  }
+
   static enum TestMacros implements SnippetMacroType {
     TEST("${TEST}"),
     MACRO_NREC("${MACRO_NREC}"),
-    MACRO_REC("${MACRO_REC}");
+    MACRO_REC("${MACRO_REC}"),
+    MACRO_MARKER("${MACRO_MARKER}"),
+    CYCLE_A("${CYCLE_A}"),
+    CYCLE_B("${CYCLE_B}");
 
     private static final ImmutableMap<String, TestMacros> LOOKUP_KEY;
 
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Audio;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Banner;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Native;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Pmp;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Pmp.Deal;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Video;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BidRequestIndex}.
+ */
+public class BidRequestIndexTest {
+  private static final BidRequest request = BidRequest.newBuilder()
+      .setId("1")
+      .addImp(Imp.newBuilder()
+          .setId("1")
+          .setBanner(Banner.newBuilder()
+              .setId("b1").setW(300).setH(250)
+              .addFormat(Banner.Format.newBuilder().setW(728).setH(90))
+              .addFormat(Banner.Format.newBuilder().setW(300).setH(250)))
+          .setPmp(Pmp.newBuilder()
+              .addDeals(Deal.newBuilder().setId("deal1"))
+              .addDeals(Deal.newBuilder().setId("deal1"))))
+      .addImp(Imp.newBuilder()
+          .setId("2")
+          .setBanner(Banner.newBuilder()
+              .setId("b2")
+              .addFormat(Banner.Format.newBuilder().setW(300).setH(250)))
+          .setVideo(Video.newBuilder())
+          .setPmp(Pmp.newBuilder()
+              .addDeals(Deal.newBuilder().setId("deal1"))
+              .addDeals(Deal.newBuilder().setId("deal2"))))
+      .addImp(Imp.newBuilder().setId("3").setAudio(Audio.newBuilder()))
+      .addImp(Imp.newBuilder().setId("4").setNative(Native.newBuilder()))
+      .addImp(Imp.newBuilder().setId("1"))
+      .build();
+  private static final Imp imp1 = request.getImp(0);
+  private static final Imp imp2 = request.getImp(1);
+
+  @Test
+  public void testImpWithId() {
+    BidRequestIndex index = BidRequestIndex.of(request);
+    assertThat(index.request()).isSameAs(request);
+    assertThat(index.impWithId("1")).isSameAs(imp1);
+    assertThat(index.impWithId("4")).isSameAs(request.getImp(3));
+    assertThat(index.impWithId("5")).isNull();
+    assertThat(index.toString()).isEqualTo("BidRequestIndex(1)");
+  }
+
+  @Test
+  public void testBannerImpWithId() {
+    BidRequestIndex index = BidRequestIndex.of(request);
+    assertThat(index.bannerImpWithId(null, "b2")).isSameAs(imp2);
+    assertThat(index.bannerImpWithId("2", "b2")).isSameAs(imp2);
+    assertThat(index.bannerImpWithId("1", "b2")).isNull();
+    assertThat(index.bannerImpWithId(null, "b3")).isNull();
+  }
+
+  @Test
+  public void testImpsWithDealId() {
+    BidRequestIndex index = BidRequestIndex.of(request);
+    assertThat(index.impsWithDealId("deal1")).containsExactly(imp1, imp2).inOrder();
+    assertThat(index.impsWithDealId("deal2")).containsExactly(imp2);
+    assertThat(index.impsWithDealId("deal3")).isEmpty();
+  }
+
+  @Test
+  public void testBannerImpsWithSize() {
+    BidRequestIndex index = BidRequestIndex.of(request);
+    assertThat(index.bannerImpsWithSize(300, 250)).containsExactly(imp1, imp2).inOrder();
+    assertThat(index.bannerImpsWithSize(728, 90)).containsExactly(imp1);
+    assertThat(index.bannerImpsWithSize(90, 728)).isEmpty();
+  }
+
+  @Test
+  public void testMediaImps() {
+    BidRequestIndex index = BidRequestIndex.of(request);
+    assertThat(index.bannerImps()).containsExactly(imp1, imp2).inOrder();
+    assertThat(index.videoImps()).containsExactly(imp2);
+    assertThat(index.audioImps()).containsExactly(request.getImp(2));
+    assertThat(index.nativeImps()).containsExactly(request.getImp(3));
+  }
+}
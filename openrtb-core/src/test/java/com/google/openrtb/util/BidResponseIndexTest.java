@@ -0,0 +1,165 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BidResponseIndex}.
+ */
+public class BidResponseIndexTest {
+
+  @Test
+  public void testLookups() {
+    BidResponseIndex index = BidResponseIndex.of(testResponse());
+    BidResponse.Builder response = index.response();
+    assertThat(index.toString()).isEqualTo("BidResponseIndex(1)");
+
+    assertThat(index.bidWithId("1")).isSameAs(response.getSeatbidBuilder(0).getBidBuilder(0));
+    assertThat(index.bidWithId("3")).isSameAs(response.getSeatbidBuilder(1).getBidBuilder(0));
+    assertThat(index.bidWithId("9")).isNull();
+    assertThat(index.bidWithId("x", "2")).isSameAs(response.getSeatbidBuilder(0).getBidBuilder(1));
+    assertThat(index.bidWithId("x", "3")).isNull();
+    assertThat(index.bidWithId(null, "3")).isSameAs(response.getSeatbidBuilder(1).getBidBuilder(0));
+    assertThat(index.bidWithId(OpenRtbUtils.SEAT_ANY, "2")).isNotNull();
+    assertThat(index.bidWithId("y", "1")).isNull();
+    assertThat(index.bids("x")).hasSize(2);
+    assertThat(index.bids(null)).hasSize(1);
+    assertThat(index.bids("y")).isEmpty();
+    assertThat(index.bids(OpenRtbUtils.SEAT_ANY)).hasSize(2);
+    assertThat(index.bidsWithImpId("1")).containsExactly(
+        response.getSeatbidBuilder(0).getBidBuilder(0),
+        response.getSeatbidBuilder(1).getBidBuilder(0)).inOrder();
+    assertThat(index.bidsWithImpId("9")).isEmpty();
+
+    for (String id : new String[] { "1", "2", "3", "9" }) {
+      assertThat(index.bidWithId(id)).isSameAs(OpenRtbUtils.bidWithId(response, id));
+      for (String seat : new String[] { "x", null, "y" }) {
+        assertThat(index.bidWithId(seat, id))
+            .isSameAs(OpenRtbUtils.bidWithId(response, seat, id));
+      }
+    }
+  }
+
+  @Test
+  public void testChanges() {
+    BidResponseIndex index = BidResponseIndex.of(testResponse());
+    BidResponse.Builder response = index.response();
+
+    assertThat(index.seatBid("x")).isSameAs(response.getSeatbidBuilder(0));
+    assertThat(index.seatBid()).isSameAs(response.getSeatbidBuilder(1));
+    SeatBid.Builder seatY = index.seatBid("y");
+    assertThat(response.getSeatbidCount()).isEqualTo(3);
+    assertThat(index.seatBid("y")).isSameAs(seatY);
+    seatY.addBid(Bid.newBuilder().setId("4").setImpid("1").setPrice(1));
+    assertThat(index.bidWithId("y", "4")).isNull();
+    index.reindex();
+    assertThat(index.bidWithId("y", "4")).isNotNull();
+    assertThat(index.bidsWithImpId("1")).hasSize(3);
+
+    assertThat(index.removeBids(bid -> !bid.getId().equals("1"))).isTrue();
+    assertThat(index.bidWithId("1")).isNull();
+    assertThat(index.bidWithId("x", "2")).isSameAs(response.getSeatbidBuilder(0).getBidBuilder(0));
+    assertThat(index.removeBids("x", bid -> true)).isFalse();
+
+    assertThat(index.updateBids("x", bid -> {
+      bid.setId("5");
+      return true;
+    })).isTrue();
+    assertThat(index.bidWithId("2")).isNull();
+    assertThat(index.bidWithId("x", "5")).isSameAs(response.getSeatbidBuilder(0).getBidBuilder(0));
+    assertThat(index.updateBids(bid -> false)).isFalse();
+
+    assertThat(index.compactBids(bid -> !bid.getId().equals("4"))).isEqualTo(1);
+    assertThat(index.bidWithId("y", "4")).isNull();
+    assertThat(index.seatBid("y")).isNotSameAs(seatY);
+    assertThat(index.compactBids(bid -> true)).isEqualTo(0);
+
+    index.bidWithId("5").setId("6");
+    assertThat(index.bidWithId("6")).isNull();
+    index.reindex();
+    assertThat(index.bidWithId("6")).isNotNull();
+  }
+
+  @Test
+  public void testIncrementalChanges() {
+    BidResponseIndex index = BidResponseIndex.of(testResponse());
+    BidResponse.Builder response = index.response();
+    Bid.Builder bid3 = index.bidWithId("3");
+
+    // Not seen by the index, so it's not rebuilt by the changes below.
+    bid3.setId("7");
+    assertThat(index.updateBids(bid -> {
+      bid.setPrice(2);
+      return true;
+    })).isTrue();
+    assertThat(index.removeBids("x", bid -> !bid.getId().equals("1"))).isTrue();
+    assertThat(index.bidWithId("1")).isNull();
+    assertThat(index.bidWithId("3")).isSameAs(bid3);
+    assertThat(index.bidsWithImpId("1")).containsExactly(bid3);
+    assertThat(index.bidWithId("x", "2").getPrice()).isEqualTo(2.0);
+
+    assertThat(index.updateBids(bid -> {
+      bid.setImpid("3");
+      return true;
+    })).isTrue();
+    assertThat(index.bidsWithImpId("1")).isEmpty();
+    assertThat(index.bidsWithImpId("3")).hasSize(2);
+    assertThat(index.bidWithId("7")).isSameAs(response.getSeatbidBuilder(1).getBidBuilder(0));
+  }
+
+  @Test
+  public void testDuplicateIds() {
+    BidResponseIndex index = BidResponseIndex.of(testResponse()
+        .addSeatbid(SeatBid.newBuilder()
+            .setSeat("x")
+            .addBid(Bid.newBuilder().setId("1").setImpid("2").setPrice(1))));
+    BidResponse.Builder response = index.response();
+
+    assertThat(index.bidWithId("1")).isSameAs(response.getSeatbidBuilder(0).getBidBuilder(0));
+    assertThat(index.compactBids(bid -> bid.getId().equals("3"))).isEqualTo(3);
+    assertThat(index.bidWithId("1")).isNull();
+    assertThat(index.seatBid("x").getBidCount()).isEqualTo(0);
+
+    index = BidResponseIndex.of(testResponse()
+        .addSeatbid(SeatBid.newBuilder()
+            .setSeat("x")
+            .addBid(Bid.newBuilder().setId("1").setImpid("2").setPrice(1))));
+    response = index.response();
+    assertThat(index.bidWithId("x", "1")).isSameAs(response.getSeatbidBuilder(0).getBidBuilder(0));
+    assertThat(index.compactBids(bid -> bid.getImpid().equals("2"))).isEqualTo(2);
+    assertThat(index.bids("x")).hasSize(1);
+    assertThat(index.bidWithId("x", "1")).isNull();
+    assertThat(index.bidWithId("1")).isSameAs(response.getSeatbidBuilder(1).getBidBuilder(0));
+  }
+
+  private static BidResponse.Builder testResponse() {
+    return BidResponse.newBuilder()
+        .setId("1")
+        .addSeatbid(SeatBid.newBuilder()
+            .setSeat("x")
+            .addBid(Bid.newBuilder().setId("1").setImpid("1").setPrice(1))
+            .addBid(Bid.newBuilder().setId("2").setImpid("2").setPrice(1)))
+        .addSeatbid(SeatBid.newBuilder()
+            .addBid(Bid.newBuilder().setId("3").setImpid("1").setPrice(1)));
+  }
+}
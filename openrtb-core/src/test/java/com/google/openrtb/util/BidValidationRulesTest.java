@@ -0,0 +1,110 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.Arrays.asList;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Banner;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Pmp;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Pmp.Deal;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BidValidationRules}.
+ */
+public class BidValidationRulesTest {
+  private static final PreparedRequest request = new OpenRtbValidator(new MetricRegistry())
+      .prepare(BidRequest.newBuilder()
+          .setId("1")
+          .addAllWseat(asList("seat1", "seat2", "seat3"))
+          .addBseat("seat3")
+          .addImp(Imp.newBuilder()
+              .setId("1")
+              .setBidfloor(1.0)
+              .setBanner(Banner.newBuilder()
+                  .setW(300).setH(250)
+                  .addFormat(Banner.Format.newBuilder().setW(728).setH(90))))
+          .addImp(Imp.newBuilder()
+              .setId("2")
+              .setBanner(Banner.newBuilder())
+              .setPmp(Pmp.newBuilder()
+                  .setPrivateAuction(true)
+                  .addDeals(Deal.newBuilder().setId("deal1").setBidfloor(5.0))
+                  .addDeals(Deal.newBuilder().setId("deal2").addWseat("seat1"))))
+          .build());
+  private static final SeatBid seat1 = SeatBid.newBuilder().setSeat("seat1").build();
+  private static final SeatBid seat2 = SeatBid.newBuilder().setSeat("seat2").build();
+  private static final SeatBid seat3 = SeatBid.newBuilder().setSeat("seat3").build();
+
+  @Test
+  public void testDeals() {
+    BidValidationRule rule = BidValidationRules.deals();
+    assertThat(rule.validate(request, seat1, bid("1"))).isTrue();
+    assertThat(rule.validate(request, seat1, bid("1").setDealid("deal1"))).isFalse();
+    assertThat(rule.validate(request, seat1, bid("2"))).isFalse();
+    assertThat(rule.validate(request, seat1, bid("2").setDealid("deal1"))).isTrue();
+    assertThat(rule.validate(request, seat1, bid("2").setDealid("deal3"))).isFalse();
+    assertThat(rule.validate(request, seat1, bid("2").setDealid("deal2"))).isTrue();
+    assertThat(rule.validate(request, seat2, bid("2").setDealid("deal2"))).isFalse();
+    assertThat(rule.validate(request, null, bid("2").setDealid("deal2"))).isTrue();
+    assertThat(rule.validate(request, seat1, bid("3"))).isTrue();
+  }
+
+  @Test
+  public void testSeats() {
+    BidValidationRule rule = BidValidationRules.seats();
+    assertThat(rule.validate(request, seat1, bid("1"))).isTrue();
+    assertThat(rule.validate(request, seat3, bid("1"))).isFalse();
+    assertThat(rule.validate(request, SeatBid.newBuilder().setSeat("seat4"), bid("1")))
+        .isFalse();
+    assertThat(rule.validate(request, SeatBid.newBuilder(), bid("1"))).isTrue();
+    assertThat(rule.validate(request, null, bid("1"))).isTrue();
+  }
+
+  @Test
+  public void testBannerSize() {
+    BidValidationRule rule = BidValidationRules.bannerSize();
+    assertThat(rule.validate(request, null, bid("1").setW(300).setH(250))).isTrue();
+    assertThat(rule.validate(request, null, bid("1").setW(728).setH(90))).isTrue();
+    assertThat(rule.validate(request, null, bid("1").setW(728).setH(250))).isFalse();
+    assertThat(rule.validate(request, null, bid("1"))).isTrue();
+    assertThat(rule.validate(request, null, bid("2").setW(1).setH(1))).isTrue();
+  }
+
+  @Test
+  public void testBidfloor() {
+    BidValidationRule rule = BidValidationRules.bidfloor();
+    assertThat(rule.validate(request, null, bid("1").setPrice(1.0))).isTrue();
+    assertThat(rule.validate(request, null, bid("1").setPrice(0.5))).isFalse();
+    assertThat(rule.validate(request, null, bid("2").setPrice(0.5))).isTrue();
+    assertThat(rule.validate(request, null, bid("2").setPrice(4.0).setDealid("deal1")))
+        .isFalse();
+    assertThat(rule.validate(request, null, bid("2").setPrice(5.0).setDealid("deal1")))
+        .isTrue();
+    assertThat(rule.validate(request, null, bid("3").setPrice(0))).isTrue();
+  }
+
+  private static Bid.Builder bid(String impId) {
+    return Bid.newBuilder().setId("bid").setImpid(impId).setPrice(10.0);
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.Arrays.asList;
+
+import com.google.openrtb.OpenRtb.ContentCategory;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ContentCategoryTree}.
+ */
+public class ContentCategoryTreeTest {
+
+  @Test
+  public void testTree() {
+    assertThat(ContentCategoryTree.parent(ContentCategory.IAB7_12))
+        .isSameAs(ContentCategory.IAB7);
+    assertThat(ContentCategoryTree.parent(ContentCategory.IAB7)).isNull();
+    assertThat(ContentCategoryTree.parent(ContentCategory.UNDEFINED)).isNull();
+    assertThat(ContentCategoryTree.children(ContentCategory.IAB26)).containsExactly(
+        ContentCategory.IAB26_1, ContentCategory.IAB26_2,
+        ContentCategory.IAB26_3, ContentCategory.IAB26_4).inOrder();
+    assertThat(ContentCategoryTree.children(ContentCategory.IAB7_12)).isEmpty();
+
+    for (ContentCategory cat : ContentCategory.values()) {
+      ContentCategory parent = ContentCategoryTree.parent(cat);
+      if (parent != null) {
+        assertThat(cat.name()).startsWith(parent.name() + "_");
+        assertThat(ContentCategoryTree.children(parent)).contains(cat);
+      }
+    }
+  }
+
+  @Test
+  public void testBlocked() {
+    long[] blocked = ContentCategoryTree.blocked(asList("IAB7", "IAB1-2", "IAB99", "x"));
+    assertThat(ContentCategoryTree.isBlocked(blocked, ContentCategory.IAB7)).isTrue();
+    assertThat(ContentCategoryTree.isBlocked(blocked, ContentCategory.IAB7_12)).isTrue();
+    assertThat(ContentCategoryTree.isBlocked(blocked, ContentCategory.IAB1_2)).isTrue();
+    assertThat(ContentCategoryTree.isBlocked(blocked, ContentCategory.IAB1)).isFalse();
+    assertThat(ContentCategoryTree.isBlocked(blocked, ContentCategory.IAB1_3)).isFalse();
+    assertThat(ContentCategoryTree.isBlocked(blocked, ContentCategory.IAB26_4)).isFalse();
+    assertThat(ContentCategoryTree.isBlocked(
+        ContentCategoryTree.blocked(asList("IAB26")), ContentCategory.IAB26_4)).isTrue();
+  }
+}
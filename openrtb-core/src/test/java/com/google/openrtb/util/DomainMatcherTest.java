@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DomainMatcher}.
+ */
+public class DomainMatcherTest {
+
+  @Test
+  public void testMatches() {
+    DomainMatcher matcher = DomainMatcher.of(
+        asList("brand.com", " Other.CO.uk. ", "*.wild.net", "brand.com", "", "x.brand.com"));
+    assertThat(matcher.size()).isEqualTo(4);
+    assertThat(matcher.isEmpty()).isFalse();
+    assertThat(matcher.toString()).contains("4");
+
+    assertThat(matcher.matches("brand.com")).isTrue();
+    assertThat(matcher.matches("BRAND.com.")).isTrue();
+    assertThat(matcher.matches("ads.brand.com")).isTrue();
+    assertThat(matcher.matches("a.b.c.brand.com")).isTrue();
+    assertThat(matcher.matches("other.co.uk")).isTrue();
+    assertThat(matcher.matches("www.other.co.uk")).isTrue();
+    assertThat(matcher.matches("wild.net")).isTrue();
+
+    assertThat(matcher.matches("co.uk")).isFalse();
+    assertThat(matcher.matches("com")).isFalse();
+    assertThat(matcher.matches("mybrand.com")).isFalse();
+    assertThat(matcher.matches("brand.co")).isFalse();
+    assertThat(matcher.matches("brand.com.evil.org")).isFalse();
+    assertThat(matcher.matches("")).isFalse();
+    assertThat(matcher.matches(".")).isFalse();
+  }
+
+  @Test
+  public void testNone() {
+    assertThat(DomainMatcher.of(asList("", " ")).isEmpty()).isTrue();
+    assertThat(DomainMatcher.of(asList())).isSameAs(DomainMatcher.NONE);
+    assertThat(DomainMatcher.NONE.matches("brand.com")).isFalse();
+  }
+
+  @Test
+  public void testLarge() {
+    List<String> domains = new ArrayList<>();
+    for (int i = 0; i < 500; ++i) {
+      domains.add("adv" + i + (i % 2 == 0 ? ".com" : ".net"));
+    }
+    DomainMatcher matcher = DomainMatcher.of(domains);
+    for (int i = 0; i < 500; ++i) {
+      assertThat(matcher.matches("ads.adv" + i + (i % 2 == 0 ? ".com" : ".net"))).isTrue();
+      assertThat(matcher.matches("adv" + i + (i % 2 == 0 ? ".net" : ".com"))).isFalse();
+    }
+  }
+}
@@ -28,7 +28,10 @@ import com.google.openrtb.OpenRtb.BidResponse;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
 import com.google.openrtb.OpenRtb.ContentCategory;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -61,6 +64,34 @@ public class OpenRtbUtilsTest {
         .isEqualTo(1);
   }
 
+  @Test
+  public void testRequest_imps_index() {
+    BidRequest request = BidRequest.newBuilder()
+        .setId("1")
+        .addImp(Imp.newBuilder().setId("1").setBanner(Banner.newBuilder().setId("0")))
+        .addImp(Imp.newBuilder().setId("2").setBanner(Banner.newBuilder().setId("0")))
+        .addImp(Imp.newBuilder().setId("3").setVideo(Video.newBuilder()))
+        .addImp(Imp.newBuilder().setId("4").setNative(Native.newBuilder()))
+        .build();
+    BidRequestIndex index = BidRequestIndex.of(request);
+
+    assertThat(OpenRtbUtils.impWithId(index, "2")).isSameAs(request.getImp(1));
+    assertThat(OpenRtbUtils.impWithId(index, "notfound")).isNull();
+    assertThat(OpenRtbUtils.bannerImpWithId(index, "2", "0")).isSameAs(request.getImp(1));
+    assertThat(OpenRtbUtils.bannerImpWithId(index, null, "0")).isSameAs(request.getImp(0));
+    assertThat(OpenRtbUtils.bannerImpWithId(index, "3", "0")).isNull();
+    for (boolean[] types : new boolean[][] {
+        {true, false, false}, {false, true, false}, {false, false, true}, {true, true, false}}) {
+      Predicate<Imp> filter =
+          OpenRtbUtils.addFilters(OpenRtbUtils.IMP_ALL, types[0], types[1], types[2]);
+      assertThat(OpenRtbUtils.impsWith(index, filter))
+          .containsExactlyElementsIn(OpenRtbUtils.impsWith(request, filter)).inOrder();
+    }
+    Predicate<Imp> filter = imp -> imp.getId().compareTo("1") > 0;
+    assertThat(OpenRtbUtils.impsWith(index, filter))
+        .containsExactlyElementsIn(OpenRtbUtils.impsWith(request, filter)).inOrder();
+  }
+
   @Test
   public void testRequest_imps_oftype() {
     BidRequest request = BidRequest.newBuilder()
@@ -215,6 +246,78 @@ public class OpenRtbUtilsTest {
     assertThat(OpenRtbUtils.bids(response)).isEmpty();
   }
 
+  @Test
+  public void testResponse_compact() {
+    BidResponse.Builder response = compactTestResponse();
+    assertThat(OpenRtbUtils.compactBids(response, bid -> true)).isEqualTo(0);
+    assertThat(response.getSeatbidCount()).isEqualTo(4);
+    assertThat(OpenRtbUtils.compactBids(response,
+        bid -> !"1".equals(bid.getId()) && !"4".equals(bid.getId()))).isEqualTo(2);
+    assertThat(response.getSeatbidCount()).isEqualTo(3);
+    assertThat(response.getSeatbidBuilder(0).getBidBuilder(0).getId()).isEqualTo("2");
+    assertThat(response.getSeatbidBuilder(1).getSeat()).isEqualTo("empty");
+    assertThat(response.getSeatbidBuilder(2).getSeat()).isEqualTo("y");
+    assertThat(OpenRtbUtils.compactBids(response, bid -> false)).isEqualTo(3);
+    assertThat(response.getSeatbidCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testResponse_removeAlternate() {
+    SeatBid.Builder seatbid = SeatBid.newBuilder();
+    for (int i = 0; i < 6; ++i) {
+      seatbid.addBid(buildHtmlBid(String.valueOf(i), 100));
+    }
+    BidResponse.Builder response = BidResponse.newBuilder().addSeatbid(seatbid);
+    List<String> tested = new ArrayList<>();
+    assertThat(OpenRtbUtils.removeBids(response, bid -> {
+      tested.add(bid.getId());
+      return Integer.parseInt(bid.getId()) % 2 == 1;
+    })).isTrue();
+    assertThat(tested).containsExactly("0", "1", "2", "3", "4", "5").inOrder();
+    assertThat(response.getSeatbidBuilder(0).getBidBuilderList().stream()
+        .map(Bid.Builder::getId).collect(Collectors.toList()))
+        .containsExactly("1", "3", "5").inOrder();
+  }
+
+  @Test
+  public void testResponse_compactBitSet() {
+    BidResponse.Builder response = compactTestResponse();
+    assertThat(OpenRtbUtils.compactBids(response, new BitSet())).isEqualTo(0);
+    assertThat(response.getSeatbidCount()).isEqualTo(4);
+
+    BitSet removed = new BitSet();
+    removed.set(0);
+    removed.set(2);
+    removed.set(3);
+    assertThat(OpenRtbUtils.compactBids(response, removed)).isEqualTo(3);
+    assertThat(removed.cardinality()).isEqualTo(3);
+    assertThat(response.getSeatbidCount()).isEqualTo(3);
+    assertThat(OpenRtbUtils.bids(response, null)).hasSize(1);
+    assertThat(OpenRtbUtils.bids(response, null).get(0).getId()).isEqualTo("2");
+    assertThat(OpenRtbUtils.bids(response, "y")).hasSize(1);
+    assertThat(OpenRtbUtils.bids(response, "y").get(0).getId()).isEqualTo("5");
+
+    removed.clear();
+    removed.set(1);
+    removed.set(100);
+    assertThat(OpenRtbUtils.compactBids(response, removed)).isEqualTo(1);
+    assertThat(response.getSeatbidCount()).isEqualTo(2);
+    assertThat(OpenRtbUtils.bids(response, "empty")).isEmpty();
+  }
+
+  private static BidResponse.Builder compactTestResponse() {
+    return BidResponse.newBuilder()
+        .addSeatbid(SeatBid.newBuilder()
+            .addBid(buildHtmlBid("1", 100))
+            .addBid(buildHtmlBid("2", 100))
+            .addBid(buildHtmlBid("3", 200)))
+        .addSeatbid(SeatBid.newBuilder().setSeat("x")
+            .addBid(buildHtmlBid("4", 100)))
+        .addSeatbid(SeatBid.newBuilder().setSeat("empty"))
+        .addSeatbid(SeatBid.newBuilder().setSeat("y")
+            .addBid(buildHtmlBid("5", 100)));
+  }
+
   @Test
   public void testResponse_updater() {
     BidResponse.Builder response = BidResponse.newBuilder().addSeatbid(SeatBid.newBuilder()
@@ -28,9 +28,13 @@ import com.google.openrtb.OpenRtb.BidRequest.Imp.Video;
 import com.google.openrtb.OpenRtb.BidResponse;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBidOrBuilder;
 import com.google.openrtb.OpenRtb.CreativeAttribute;
 import com.google.openrtb.OpenRtb.Protocol;
 import com.google.openrtb.OpenRtb.VideoLinearity;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -173,6 +177,216 @@ public class OpenRtbValidatorTest {
     assertThat(OpenRtbUtils.bids(response)).isEmpty();
   }
 
+  @Test
+  public void testBlockedSubdomain() {
+    BidResponse.Builder response = testResponse(testBid().addAdomain("ads.adv1.com"));
+    response.getSeatbidBuilder(0)
+        .addBid(testBid().setId("2").addAdomain("adv1.com.org"))
+        .addBid(testBid().setId("3").addAdomain("global.com"))
+        .addBid(testBid().setId("4").addAdomain("www.global.com"));
+    MetricRegistry globalRegistry = new MetricRegistry();
+    OpenRtbValidator globalValidator = new OpenRtbValidator(
+        globalRegistry, DomainMatcher.of(asList("global.com")));
+    assertThat(globalValidator.validate(requestBanner, response)).isFalse();
+    assertThat(OpenRtbUtils.bids(response)).hasSize(1);
+    assertThat(globalRegistry.counter(
+        MetricRegistry.name(OpenRtbValidator.class, "invalid-advertiser")).getCount())
+        .isEqualTo(3);
+  }
+
+  @Test
+  public void testBlockedCategory() {
+    BidRequest request = requestBanner.toBuilder()
+        .clearBcat().addAllBcat(asList("IAB7", "IAB1-2", "custom")).build();
+    BidResponse.Builder response = testResponse(testBid().addCat("IAB1").addCat("IAB1-3"));
+    response.getSeatbidBuilder(0)
+        .addBid(testBid().setId("2").addCat("IAB7-12"))
+        .addBid(testBid().setId("3").addCat("IAB1_2"))
+        .addBid(testBid().setId("4").addCat("custom"))
+        .addBid(testBid().setId("5").addCat("other"));
+    assertThat(validator.validate(request, response)).isFalse();
+    assertThat(OpenRtbUtils.bids(response)).hasSize(2);
+    assertThat(metricRegistry.counter(
+        MetricRegistry.name(OpenRtbValidator.class, "invalid-category")).getCount())
+        .isEqualTo(3);
+  }
+
+  @Test
+  public void testPreparedRequest() {
+    PreparedRequest prepared = validator.prepare(requestVideo);
+    BidResponse.Builder response = testResponse(testBid()
+        .addAllAttr(asList(CreativeAttribute.SURVEYS)));
+    for (int i = 0; i < 10; ++i) {
+      response.getSeatbidBuilder(0).addBid(testBid()
+          .setId("bid" + i)
+          .setImpid(i % 2 == 0 ? "1" : "2")
+          .addAttr(i % 3 == 0 ? CreativeAttribute.TEXT_ONLY : CreativeAttribute.SURVEYS));
+    }
+    assertThat(validator.validate(prepared, response)).isFalse();
+    assertThat(OpenRtbUtils.bids(response)).hasSize(4);
+    for (Bid.Builder bid : OpenRtbUtils.bids(response)) {
+      assertThat(validator.validate(prepared, bid)).isTrue();
+    }
+    assertThat(validator.validate(prepared, response)).isTrue();
+    assertThat(metricRegistry.counter(
+        MetricRegistry.name(OpenRtbValidator.class, "unmatched-imp")).getCount()).isEqualTo(5);
+    assertThat(metricRegistry.counter(
+        MetricRegistry.name(OpenRtbValidator.class, "invalid-creative-attr")).getCount())
+        .isEqualTo(2);
+  }
+
+  @Test
+  public void testSingleBids() {
+    for (int i = 0; i < 3; ++i) {
+      assertThat(validator.validate(requestBanner, testBid().addAttr(CreativeAttribute.SURVEYS)))
+          .isTrue();
+      assertThat(validator.validate(requestBanner, testBid().addAttr(CreativeAttribute.POP)))
+          .isFalse();
+      assertThat(validator.validate(requestVideo, testBid().addAttr(CreativeAttribute.TEXT_ONLY)))
+          .isFalse();
+    }
+  }
+
+  @SuppressWarnings("deprecation")
+  @Test
+  public void testLegacyHooks() {
+    // Subclasses that override the list-based hooks still see the blocked attributes.
+    List<Object> blocked = new ArrayList<>();
+    OpenRtbValidator legacyValidator = new OpenRtbValidator(new MetricRegistry()) {
+      @Override protected boolean validateCreats(
+          Bid.Builder bid, List<CreativeAttribute> badCreats) {
+        blocked.addAll(badCreats);
+        return true;
+      }
+
+      @Override protected boolean validateCompanions(Bid.Builder bid, List<Banner> companions) {
+        blocked.add(companions.get(0).getId());
+        return true;
+      }
+    };
+    assertThat(legacyValidator.validate(requestVideo, testBid()
+        .addAllAttr(asList(CreativeAttribute.POP, CreativeAttribute.TEXT_ONLY)))).isTrue();
+    assertThat(blocked).containsExactly(CreativeAttribute.POP, "1");
+  }
+
+  @Test
+  public void testRules() {
+    validator.addRule("bidfloor", BidValidationRules.bidfloor());
+    BidRequest request = requestBanner.toBuilder()
+        .setImp(0, requestBanner.getImp(0).toBuilder().setBidfloor(500)).build();
+    BidResponse.Builder response = testResponse(testBid()
+        .addAllAdomain(asList("adv1.com"))
+        .addAllAttr(asList(CreativeAttribute.POP)));
+
+    assertThat(validator.getMode()).isSameAs(OpenRtbValidator.Mode.COLLECT_ALL);
+    assertThat(validator.validate(request, response.clone())).isFalse();
+    assertThat(counter("invalid-advertiser")).isEqualTo(1);
+    assertThat(counter("invalid-creative-attr")).isEqualTo(1);
+    assertThat(counter("bidfloor")).isEqualTo(1);
+
+    validator.setMode(OpenRtbValidator.Mode.REJECT_FIRST);
+    assertThat(validator.validate(request, response.clone())).isFalse();
+    assertThat(counter("invalid-advertiser") + counter("invalid-creative-attr")
+        + counter("bidfloor")).isEqualTo(4);
+  }
+
+  @Test
+  public void testUnmatchedImpStops() {
+    BidResponse.Builder response = testResponse(testBid()
+        .setImpid("9")
+        .addAllAdomain(asList("adv1.com")));
+
+    assertThat(validator.getMode()).isSameAs(OpenRtbValidator.Mode.COLLECT_ALL);
+    assertThat(validator.validate(requestBanner, response.clone())).isFalse();
+    assertThat(counter("unmatched-imp")).isEqualTo(1);
+    assertThat(counter("invalid-advertiser")).isEqualTo(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateRule() {
+    validator.addRule("unmatched-imp", (request, seat, bid) -> true);
+  }
+
+  @Test
+  public void testReorder() {
+    validator.setMode(OpenRtbValidator.Mode.REJECT_FIRST)
+        .addRule("seats", BidValidationRules.seats())
+        .addRule("slow", (request, seat, bid) -> {
+          Thread.yield();
+          return bid.getPrice() < 1000;
+        });
+    assertThat(validator.ruleOrder()).containsExactly("unmatched-imp", "invalid-advertiser",
+        "invalid-category", "invalid-creative-attr", "seats", "slow").inOrder();
+
+    PreparedRequest request = validator.prepare(requestBanner);
+    int rounds = ValidationPipeline.SAMPLE_RATE * ValidationPipeline.REORDER_SAMPLES * 4;
+    for (int i = 0; i < rounds; ++i) {
+      validator.validate(request, testBid().setPrice(i % 2 == 0 ? 1 : 2000));
+    }
+    // The only rule that rejects anything goes first.
+    assertThat(validator.ruleOrder().get(0)).isEqualTo("slow");
+    assertThat(counter("slow")).isEqualTo(rounds / 2);
+  }
+
+  @Test
+  public void testMetricsBreakdown() {
+    MetricRegistry seatRegistry = new MetricRegistry();
+    OpenRtbValidator seatValidator = new OpenRtbValidator(
+        seatRegistry, DomainMatcher.NONE, asList("seat1", "seat2"));
+    BidResponse.Builder response = BidResponse.newBuilder()
+        .addSeatbid(SeatBid.newBuilder().setSeat("seat1")
+            .addBid(testBid().addAdomain("adv1.com"))
+            .addBid(testBid().setId("2").setImpid("2")))
+        .addSeatbid(SeatBid.newBuilder().setSeat("seat3")
+            .addBid(testBid().addAdomain("adv2.com")));
+    assertThat(seatValidator.validate(requestBanner, response)).isFalse();
+
+    assertThat(seatRegistry.getCounters().keySet()).contains(
+        MetricRegistry.name(OpenRtbValidator.class, "invalid-category", "seat2", "native"));
+    assertThat(seatRegistry.counter(MetricRegistry.name(
+        OpenRtbValidator.class, "invalid-advertiser")).getCount()).isEqualTo(2);
+    assertThat(seatRegistry.counter(MetricRegistry.name(
+        OpenRtbValidator.class, "invalid-advertiser", "seat1", "banner")).getCount())
+        .isEqualTo(1);
+    assertThat(seatRegistry.counter(MetricRegistry.name(
+        OpenRtbValidator.class, "invalid-advertiser", "other-seat", "banner")).getCount())
+        .isEqualTo(1);
+    assertThat(seatRegistry.counter(MetricRegistry.name(
+        OpenRtbValidator.class, "unmatched-imp", "seat1", "unknown")).getCount())
+        .isEqualTo(1);
+    assertThat(seatRegistry.timer(MetricRegistry.name(OpenRtbValidator.class, "validate"))
+        .getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testDebugSampling() {
+    List<String> captured = new ArrayList<>();
+    OpenRtbValidator captureValidator = new OpenRtbValidator(new MetricRegistry()) {
+      @Override protected void debugRejected(
+          String rule, @Nullable SeatBidOrBuilder seat, Bid.Builder bid) {
+        super.debugRejected(rule, seat, bid);
+        captured.add(rule + ":" + bid.getId());
+      }
+    };
+    assertThat(captureValidator.getDebugSampleRate())
+        .isEqualTo(OpenRtbValidator.DEFAULT_DEBUG_SAMPLE_RATE);
+    BidResponse.Builder response = testResponse(testBid().addAdomain("adv1.com"));
+
+    captureValidator.setDebugSampleRate(0).validate(requestBanner, response.clone());
+    assertThat(captured).isEmpty();
+    captureValidator.setDebugSampleRate(1).validate(requestBanner, response.clone());
+    assertThat(captured).containsExactly("invalid-advertiser:1");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadDebugSampleRate() {
+    validator.setDebugSampleRate(-1);
+  }
+
+  private long counter(String name) {
+    return metricRegistry.counter(MetricRegistry.name(OpenRtbValidator.class, name)).getCount();
+  }
+
   private static BidResponse.Builder testResponse(Bid.Builder bid) {
     return BidResponse.newBuilder().addSeatbid(SeatBid.newBuilder().addBid(bid));
   }
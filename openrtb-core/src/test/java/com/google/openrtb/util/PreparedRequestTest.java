@@ -0,0 +1,49 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.Arrays.asList;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PreparedRequest}.
+ */
+public class PreparedRequestTest {
+
+  @Test
+  public void testIndexes() {
+    BidRequest request = BidRequest.newBuilder()
+        .setId("1")
+        .addAllBadv(asList("adv1.com", "adv2.com", "adv1.com"))
+        .addImp(Imp.newBuilder().setId("1").setBidfloor(1))
+        .addImp(Imp.newBuilder().setId("2"))
+        .addImp(Imp.newBuilder().setId("1").setBidfloor(2))
+        .build();
+    PreparedRequest prepared = new OpenRtbValidator(new MetricRegistry()).prepare(request);
+    assertThat(prepared.request()).isSameAs(request);
+    assertThat(prepared.imp("1")).isSameAs(OpenRtbUtils.impWithId(request, "1"));
+    assertThat(prepared.imp("2")).isSameAs(request.getImp(1));
+    assertThat(prepared.imp("3")).isNull();
+    assertThat(prepared.badv()).containsExactly("adv1.com", "adv2.com");
+    assertThat(prepared.toString()).contains("1");
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2026 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.Arrays.asList;
+
+import com.google.openrtb.OpenRtb.APIFramework;
+import com.google.openrtb.OpenRtb.ContentCategory;
+import com.google.openrtb.OpenRtb.CreativeAttribute;
+import com.google.openrtb.OpenRtb.StartDelay;
+import java.util.EnumSet;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ProtoEnumMasks}.
+ */
+public class ProtoEnumMasksTest {
+
+  @Test
+  public void testMask() {
+    long mask = ProtoEnumMasks.mask(asList(CreativeAttribute.POP, CreativeAttribute.ANNOYING));
+    assertThat(ProtoEnumMasks.contains(mask, CreativeAttribute.POP)).isTrue();
+    assertThat(ProtoEnumMasks.contains(mask, CreativeAttribute.SURVEYS)).isFalse();
+    assertThat(ProtoEnumMasks.contains(mask, ContentCategory.IAB1)).isFalse();
+    assertThat(ProtoEnumMasks.mask(asList())).isEqualTo(0);
+    assertThat(ProtoEnumMasks.toEnumSet(mask, CreativeAttribute.class))
+        .containsExactly(CreativeAttribute.POP, CreativeAttribute.ANNOYING);
+    assertThat(ProtoEnumMasks.toEnumSet(0, APIFramework.class)).isEmpty();
+
+    for (CreativeAttribute attr : CreativeAttribute.values()) {
+      assertThat(ProtoEnumMasks.toEnumSet(ProtoEnumMasks.mask(attr), CreativeAttribute.class))
+          .containsExactly(attr);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaskOutOfRange() {
+    ProtoEnumMasks.mask(ContentCategory.IAB26_4);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWordsNegative() {
+    ProtoEnumMasks.words(asList(StartDelay.GENERIC_POST_ROLL));
+  }
+
+  @Test
+  public void testWords() {
+    EnumSet<ContentCategory> cats = EnumSet.of(
+        ContentCategory.IAB1, ContentCategory.IAB26_4, ContentCategory.IAB10_1);
+    long[] words = ProtoEnumMasks.words(asList(cats.toArray(new ContentCategory[0])));
+    assertThat(ProtoEnumMasks.toEnumSet(words, ContentCategory.class)).isEqualTo(cats);
+    assertThat(ProtoEnumMasks.contains(words, ContentCategory.IAB2)).isFalse();
+    assertThat(ProtoEnumMasks.contains(new long[0], ContentCategory.IAB2)).isFalse();
+    assertThat(ProtoEnumMasks.intersects(words,
+        ProtoEnumMasks.words(asList(ContentCategory.IAB26_4)))).isTrue();
+    assertThat(ProtoEnumMasks.intersects(words,
+        ProtoEnumMasks.words(asList(ContentCategory.IAB2, ContentCategory.IAB3)))).isFalse();
+  }
+}